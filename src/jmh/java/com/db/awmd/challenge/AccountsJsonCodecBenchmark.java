@@ -0,0 +1,75 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Transaction;
+import com.db.awmd.challenge.web.AccountsJsonHttpMessageConverter;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link AccountsJsonHttpMessageConverter} with Jackson data binding plus bean validation, which is what
+ * the default message converter and {@code @Valid} do for the same request.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AccountsJsonCodecBenchmark {
+
+    private final byte[] transactionJson = ("{\"accountFromId\":\"Id-1234567890\",\"accountToId\":\"Id-0987654321\","
+            + "\"amount\":12345.67}").getBytes(StandardCharsets.UTF_8);
+    private final Account account = new Account("Id-1234567890", new BigDecimal("12345.67"));
+    private final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(256);
+
+    private ObjectMapper objectMapper;
+    private Validator validator;
+
+    @Setup
+    public void setup() {
+        this.objectMapper = new ObjectMapper().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        this.validator = Validation.buildDefaultValidatorFactory().getValidator();
+    }
+
+    @Benchmark
+    public Transaction readTransactionDataBinding() throws IOException {
+        Transaction transaction = this.objectMapper.readValue(this.transactionJson, Transaction.class);
+        Set<ConstraintViolation<Transaction>> violations = this.validator.validate(transaction);
+        if (!violations.isEmpty()) {
+            throw new IllegalStateException(violations.toString());
+        }
+        return transaction;
+    }
+
+    @Benchmark
+    public Transaction readTransactionStreaming() throws IOException {
+        return AccountsJsonHttpMessageConverter.readTransaction(new ByteArrayInputStream(this.transactionJson));
+    }
+
+    @Benchmark
+    public int writeAccountDataBinding() throws IOException {
+        this.outputStream.reset();
+        this.objectMapper.writeValue(this.outputStream, this.account);
+        return this.outputStream.size();
+    }
+
+    @Benchmark
+    public int writeAccountStreaming() throws IOException {
+        this.outputStream.reset();
+        AccountsJsonHttpMessageConverter.writeAccount(this.account, this.outputStream);
+        return this.outputStream.size();
+    }
+}
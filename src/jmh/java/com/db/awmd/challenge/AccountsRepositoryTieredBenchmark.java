@@ -0,0 +1,101 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountsCacheMetrics;
+import com.db.awmd.challenge.domain.Transaction;
+import com.db.awmd.challenge.repository.AccountsAggregates;
+import com.db.awmd.challenge.repository.AccountsRepositoryTiered;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.BalanceUpdatesPublisher;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads and transfers against {@link AccountsRepositoryTiered} with a Zipfian popularity of the accounts, i.e. a
+ * few hot accounts and a long tail of dormant ones, and a hot tier holding 1% of the accounts. Transfers go through
+ * {@link AccountsService}, which locks the accounts. The hit rate and the
+ * fault latency are printed at the end of every trial.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class AccountsRepositoryTieredBenchmark {
+
+    @Param({"200000"})
+    private int accounts;
+
+    @Param({"0.99"})
+    private double skew;
+
+    private File file;
+    private AccountsRepositoryTiered accountsRepository;
+    private BalanceUpdatesPublisher balanceUpdatesPublisher;
+    private AccountsService accountsService;
+    private String[] accountIds;
+    private double[] cumulativeProbabilities;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        this.file = File.createTempFile("accounts", ".db");
+        this.accountsRepository = new AccountsRepositoryTiered(new AccountsAggregates(new String[]{"0"}),
+                this.file.getPath(), this.accounts * 2L, this.accounts / 100);
+        this.balanceUpdatesPublisher = new BalanceUpdatesPublisher(1, 5000, 16);
+        this.accountsService = new AccountsService(this.accountsRepository, (account, description) -> { },
+                this.balanceUpdatesPublisher);
+        this.accountIds = new String[this.accounts];
+        for (int i = 0; i < this.accounts; i++) {
+            this.accountIds[i] = "Id-" + i;
+            this.accountsRepository.createAccount(new Account(this.accountIds[i], new BigDecimal(1_000_000)));
+        }
+
+        this.cumulativeProbabilities = new double[this.accounts];
+        double sum = 0;
+        for (int i = 0; i < this.accounts; i++) {
+            sum += 1 / Math.pow(i + 1, this.skew);
+            this.cumulativeProbabilities[i] = sum;
+        }
+        for (int i = 0; i < this.accounts; i++) {
+            this.cumulativeProbabilities[i] /= sum;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        AccountsCacheMetrics metrics = this.accountsRepository.getMetrics();
+        System.out.printf("%nhit rate: %.4f, faults: average %d us, max %d us, evictions: %d, write-backs: %d%n",
+                metrics.getHitRate(), metrics.getAverageFaultMicros(), metrics.getMaxFaultMicros(),
+                metrics.getEvictions(), metrics.getWriteBacks());
+        this.balanceUpdatesPublisher.stop();
+        this.accountsRepository.close();
+        this.file.delete();
+    }
+
+    @Benchmark
+    public Account getAccount() {
+        return this.accountsRepository.getAccount(nextAccountId());
+    }
+
+    @Benchmark
+    public void transfer() {
+        String accountFromId = nextAccountId();
+        String accountToId = nextAccountId();
+        if (!accountFromId.equals(accountToId)) {
+            this.accountsService.createTransaction(new Transaction(accountFromId, accountToId, BigDecimal.ONE));
+        }
+    }
+
+    private String nextAccountId() {
+        int index = Arrays.binarySearch(this.cumulativeProbabilities, ThreadLocalRandom.current().nextDouble());
+        return this.accountIds[Math.min(this.accounts - 1, index < 0 ? -index - 1 : index)];
+    }
+}
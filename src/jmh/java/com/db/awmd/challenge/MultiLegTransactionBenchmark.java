@@ -0,0 +1,83 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.MultiLegTransaction;
+import com.db.awmd.challenge.domain.Transaction;
+import com.db.awmd.challenge.repository.AccountsAggregates;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.BalanceUpdatesPublisher;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A fee-bearing payment, {@code payer -> payee} plus {@code payer -> fee account}, issued as one multi-leg transfer
+ * versus two single transfers. Every payment contends on the shared fee account.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class MultiLegTransactionBenchmark {
+
+    private static final int ACCOUNTS = 1000;
+    private static final BigDecimal AMOUNT = new BigDecimal("10.00");
+    private static final BigDecimal FEE = new BigDecimal("0.15");
+
+    private BalanceUpdatesPublisher balanceUpdatesPublisher;
+    private AccountsService accountsService;
+
+    @Setup
+    public void setup() {
+        this.balanceUpdatesPublisher = new BalanceUpdatesPublisher(1, 5000, 16);
+        this.accountsService = new AccountsService(new AccountsRepositoryInMemory(new AccountsAggregates(
+                new String[]{"0", "100", "1000", "10000", "100000", "1000000"})), (account, description) -> { },
+                this.balanceUpdatesPublisher);
+        this.accountsService.createAccount(new Account("Id-fee", BigDecimal.ZERO));
+        for (int i = 0; i < ACCOUNTS; i++) {
+            // Large enough to never run out during a trial.
+            this.accountsService.createAccount(new Account("Id-" + i, new BigDecimal(1_000_000_000)));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.balanceUpdatesPublisher.stop();
+    }
+
+    @Benchmark
+    public void multiLegTransaction() {
+        String payerId = randomAccountId();
+        String payeeId = randomAccountId(payerId);
+        this.accountsService.createMultiLegTransaction(new MultiLegTransaction(Arrays.asList(
+                new Transaction(payerId, payeeId, AMOUNT),
+                new Transaction(payerId, "Id-fee", FEE))));
+    }
+
+    @Benchmark
+    public void sequentialTransactions() {
+        String payerId = randomAccountId();
+        String payeeId = randomAccountId(payerId);
+        this.accountsService.createTransaction(new Transaction(payerId, payeeId, AMOUNT));
+        this.accountsService.createTransaction(new Transaction(payerId, "Id-fee", FEE));
+    }
+
+    private static String randomAccountId() {
+        return "Id-" + ThreadLocalRandom.current().nextInt(ACCOUNTS);
+    }
+
+    private static String randomAccountId(String otherAccountId) {
+        String accountId;
+        do {
+            accountId = randomAccountId();
+        } while (accountId.equals(otherAccountId));
+        return accountId;
+    }
+}
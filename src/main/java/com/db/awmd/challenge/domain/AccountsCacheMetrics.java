@@ -0,0 +1,25 @@
+package com.db.awmd.challenge.domain;
+
+import lombok.Data;
+
+@Data
+public class AccountsCacheMetrics {
+
+    private final long hotAccounts;
+
+    private final long coldAccounts;
+
+    private final long hits;
+
+    private final long misses;
+
+    private final double hitRate;
+
+    private final long evictions;
+
+    private final long writeBacks;
+
+    private final long averageFaultMicros;
+
+    private final long maxFaultMicros;
+}
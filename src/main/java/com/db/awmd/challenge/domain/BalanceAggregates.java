@@ -0,0 +1,16 @@
+package com.db.awmd.challenge.domain;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+public class BalanceAggregates {
+
+    private final long accounts;
+
+    private final BigDecimal total;
+
+    private final List<BalanceBucket> buckets;
+}
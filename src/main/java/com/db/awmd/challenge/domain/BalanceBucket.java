@@ -0,0 +1,18 @@
+package com.db.awmd.challenge.domain;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+@Data
+public class BalanceBucket {
+
+    /**
+     * Inclusive lower bound of the balances in the bucket, the upper bound is the lower bound of the next one.
+     */
+    private final BigDecimal lowerBound;
+
+    private final long accounts;
+
+    private final BigDecimal total;
+}
@@ -0,0 +1,28 @@
+package com.db.awmd.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+import org.hibernate.validator.constraints.NotEmpty;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+import java.util.List;
+
+/**
+ * Transfers applied all together or not at all, e.g. a payment and its fee: {@code payer -> payee} and
+ * {@code payer -> fee account}. An account may appear in any number of legs.
+ */
+@Data
+public class MultiLegTransaction {
+
+    @NotNull
+    @NotEmpty
+    @Valid
+    private final List<Transaction> legs;
+
+    @JsonCreator
+    public MultiLegTransaction(@JsonProperty("legs") List<Transaction> legs) {
+        this.legs = legs;
+    }
+}
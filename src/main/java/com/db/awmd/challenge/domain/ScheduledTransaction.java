@@ -0,0 +1,46 @@
+package com.db.awmd.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+@Data
+public class ScheduledTransaction {
+
+    private String scheduledTransactionId;
+
+    @NotNull
+    @Valid
+    private final Transaction transaction;
+
+    /**
+     * Epoch millis of the first execution.
+     */
+    @NotNull
+    @Min(value = 0, message = "Execution time must be positive.")
+    private Long executeAt;
+
+    /**
+     * Period of a standing order in millis, zero for a one-off transfer.
+     */
+    @NotNull
+    @Min(value = 0, message = "Repeat interval must be positive.")
+    private final Long repeatIntervalMillis;
+
+    @JsonCreator
+    public ScheduledTransaction(@JsonProperty("transaction") Transaction transaction,
+                                @JsonProperty("executeAt") Long executeAt,
+                                @JsonProperty("repeatIntervalMillis") Long repeatIntervalMillis) {
+        this.transaction = transaction;
+        this.executeAt = executeAt;
+        this.repeatIntervalMillis = repeatIntervalMillis == null ? 0L : repeatIntervalMillis;
+    }
+
+    public boolean isRecurring() {
+        return this.repeatIntervalMillis > 0;
+    }
+}
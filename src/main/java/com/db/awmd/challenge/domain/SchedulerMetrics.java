@@ -0,0 +1,21 @@
+package com.db.awmd.challenge.domain;
+
+import lombok.Data;
+
+@Data
+public class SchedulerMetrics {
+
+    private final long pending;
+
+    private final long ready;
+
+    private final long executed;
+
+    private final long failed;
+
+    private final long lastLagMillis;
+
+    private final long maxLagMillis;
+
+    private final long averageLagMillis;
+}
@@ -0,0 +1,8 @@
+package com.db.awmd.challenge.exception;
+
+public class IncorrectScheduleException extends RuntimeException {
+
+  public IncorrectScheduleException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,172 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.BalanceAggregates;
+import com.db.awmd.challenge.domain.BalanceBucket;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Balance aggregates maintained by the repository on every account creation and transfer, so that reconciliation
+ * never scans or locks the accounts: the total is O(1), the balance buckets O(buckets) and the top-N O(N + log n).
+ * <p>
+ * A transfer moves money between two accounts and never changes the total of all balances, so the total is only
+ * touched when accounts are created. Bucket totals are updated per account and may be observed between the
+ * legs of an in-flight transfer; their sum matches the total once transfers are quiescent.
+ */
+@Component
+public class AccountsAggregates {
+
+    private static final Comparator<RankedBalance> BY_BALANCE_DESCENDING = Comparator
+            .comparing((RankedBalance rankedBalance) -> rankedBalance.balance).reversed()
+            .thenComparing(rankedBalance -> rankedBalance.accountId);
+
+    private final BigDecimal[] bucketLowerBounds;
+    private final BigDecimalAdder[] bucketTotals;
+    private final LongAdder[] bucketAccounts;
+    private final BigDecimalAdder total = new BigDecimalAdder();
+    private final LongAdder accounts = new LongAdder();
+    private final NavigableSet<RankedBalance> ranking = new ConcurrentSkipListSet<>(BY_BALANCE_DESCENDING);
+    private volatile boolean rankingEnabled = true;
+
+    public AccountsAggregates(@Value("${aggregates.bucket-lower-bounds:0,100,1000,10000,100000,1000000}")
+                                      String[] bucketLowerBounds) {
+        this.bucketLowerBounds = new BigDecimal[bucketLowerBounds.length];
+        for (int i = 0; i < bucketLowerBounds.length; i++) {
+            this.bucketLowerBounds[i] = new BigDecimal(bucketLowerBounds[i].trim());
+        }
+        Arrays.sort(this.bucketLowerBounds);
+        this.bucketTotals = new BigDecimalAdder[this.bucketLowerBounds.length];
+        this.bucketAccounts = new LongAdder[this.bucketLowerBounds.length];
+        for (int i = 0; i < this.bucketLowerBounds.length; i++) {
+            this.bucketTotals[i] = new BigDecimalAdder();
+            this.bucketAccounts[i] = new LongAdder();
+        }
+    }
+
+    public void onAccountCreated(Account account) {
+        BigDecimal balance = account.getBalance();
+        int bucket = bucketOf(balance);
+        this.bucketTotals[bucket].add(balance);
+        this.bucketAccounts[bucket].increment();
+        this.total.add(balance);
+        this.accounts.increment();
+        if (this.rankingEnabled) {
+            this.ranking.add(new RankedBalance(account.getAccountId(), balance));
+        }
+    }
+
+    /**
+     * Must be called while both accounts are still locked, after their balances have been updated.
+     */
+    public void onTransfer(Account accountFrom, BigDecimal accountFromBalanceBefore,
+                           Account accountTo, BigDecimal accountToBalanceBefore) {
+        onBalanceChanged(accountFrom.getAccountId(), accountFromBalanceBefore, accountFrom.getBalance());
+        onBalanceChanged(accountTo.getAccountId(), accountToBalanceBefore, accountTo.getBalance());
+    }
+
+    /**
+     * Must be called while the account is still locked, after its balance has been updated. Used for the legs of a
+     * multi-leg transfer, which moves money between any number of accounts.
+     */
+    public void onBalanceChanged(Account account, BigDecimal balanceBefore) {
+        onBalanceChanged(account.getAccountId(), balanceBefore, account.getBalance());
+    }
+
+    public void clear() {
+        for (int i = 0; i < this.bucketLowerBounds.length; i++) {
+            this.bucketTotals[i].reset();
+            this.bucketAccounts[i].reset();
+        }
+        this.total.reset();
+        this.accounts.reset();
+        this.ranking.clear();
+    }
+
+    /**
+     * Stops tracking the top accounts. The ranking keeps one entry per account on heap, which defeats a repository
+     * that keeps most accounts off heap; the total and the buckets are unaffected.
+     */
+    public void disableRanking() {
+        this.rankingEnabled = false;
+        this.ranking.clear();
+    }
+
+    public boolean isRankingEnabled() {
+        return this.rankingEnabled;
+    }
+
+    public BigDecimal getTotal() {
+        return this.total.sum();
+    }
+
+    public BalanceAggregates getAggregates() {
+        List<BalanceBucket> buckets = new ArrayList<>(this.bucketLowerBounds.length);
+        for (int i = 0; i < this.bucketLowerBounds.length; i++) {
+            buckets.add(new BalanceBucket(this.bucketLowerBounds[i], this.bucketAccounts[i].sum(),
+                    this.bucketTotals[i].sum()));
+        }
+        return new BalanceAggregates(this.accounts.sum(), this.total.sum(), buckets);
+    }
+
+    public List<Account> getTopAccounts(int limit) {
+        List<Account> topAccounts = new ArrayList<>(Math.min(limit, 1024));
+        Iterator<RankedBalance> iterator = this.ranking.iterator();
+        while (topAccounts.size() < limit && iterator.hasNext()) {
+            RankedBalance rankedBalance = iterator.next();
+            topAccounts.add(new Account(rankedBalance.accountId, rankedBalance.balance));
+        }
+        return topAccounts;
+    }
+
+    private void onBalanceChanged(String accountId, BigDecimal before, BigDecimal after) {
+        int bucketBefore = bucketOf(before);
+        int bucketAfter = bucketOf(after);
+        if (bucketBefore == bucketAfter) {
+            this.bucketTotals[bucketAfter].add(after.subtract(before));
+        } else {
+            this.bucketTotals[bucketBefore].add(before.negate());
+            this.bucketAccounts[bucketBefore].decrement();
+            this.bucketTotals[bucketAfter].add(after);
+            this.bucketAccounts[bucketAfter].increment();
+        }
+        if (this.rankingEnabled) {
+            this.ranking.remove(new RankedBalance(accountId, before));
+            this.ranking.add(new RankedBalance(accountId, after));
+        }
+    }
+
+    private int bucketOf(BigDecimal balance) {
+        int low = 0;
+        int high = this.bucketLowerBounds.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (this.bucketLowerBounds[middle].compareTo(balance) <= 0) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    private static final class RankedBalance {
+        private final String accountId;
+        private final BigDecimal balance;
+
+        private RankedBalance(String accountId, BigDecimal balance) {
+            this.accountId = accountId;
+            this.balance = balance;
+        }
+    }
+}
@@ -0,0 +1,385 @@
+package com.db.awmd.challenge.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Disk-backed balances of the cold accounts: an open-addressing hash table of fixed 128 byte slots in a sparse file,
+ * read and written with positional I/O so that nothing but the slot being accessed is kept on heap. Every slot
+ * access takes the lock of the slot's stripe only, so lookups, inserts and write-backs of different accounts run in
+ * parallel; inserts of the same account are serialized on the stripe of its home slot. Slots are never freed, so a
+ * probe sequence only ever grows. The table doubles, rehashing into a new file, when it is 90% full; that and
+ * {@link #clear()} are the only operations that stop all others.
+ * <p>
+ * Account ids longer than {@value #MAX_ACCOUNT_ID_BYTES} bytes do not fit a slot and are kept on heap instead.
+ * <p>
+ * The file is recreated on startup: it extends the memory of the service, it does not make the accounts durable.
+ */
+public class AccountsFileStore implements Closeable {
+
+    static final int MAX_ACCOUNT_ID_BYTES = 80;
+    private static final int MAX_UNSCALED_BYTES = 41;
+    private static final int SLOT_SIZE = 128;
+    private static final int STATE = 0;
+    private static final int ACCOUNT_ID_LENGTH = 1;
+    private static final int ACCOUNT_ID = 2;
+    private static final int SCALE = ACCOUNT_ID + MAX_ACCOUNT_ID_BYTES;
+    private static final int UNSCALED_LENGTH = SCALE + 4;
+    private static final int UNSCALED = UNSCALED_LENGTH + 1;
+    private static final byte USED = 1;
+    private static final int STRIPES = 1024;
+    private static final int GROW_CHUNK_SLOTS = 8192;
+
+    private final Path file;
+    private final ReadWriteLock tableLock = new ReentrantReadWriteLock();
+    private final ReadWriteLock[] slotLocks = new ReadWriteLock[STRIPES];
+    private final Object[] insertLocks = new Object[STRIPES];
+    private final Map<String, BigDecimal> oversized = new ConcurrentHashMap<>();
+    private final AtomicLong size = new AtomicLong();
+    private final ThreadLocal<ByteBuffer> slotBuffers = ThreadLocal.withInitial(() -> ByteBuffer.allocate(SLOT_SIZE));
+    private FileChannel channel;
+    private long capacity;
+    private long maximumSize;
+
+    /**
+     * @param capacity initial number of slots, rounded up to a power of two; the table doubles at 90% of it.
+     */
+    public AccountsFileStore(Path file, long capacity) throws IOException {
+        this.file = file;
+        for (int i = 0; i < STRIPES; i++) {
+            this.slotLocks[i] = new ReentrantReadWriteLock();
+            this.insertLocks[i] = new Object();
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        resize(Long.highestOneBit(Math.max(2, capacity) - 1) << 1);
+        allocate(this.channel, this.capacity);
+    }
+
+    public BigDecimal get(String accountId) {
+        byte[] accountIdBytes = accountId.getBytes(StandardCharsets.UTF_8);
+        if (accountIdBytes.length > MAX_ACCOUNT_ID_BYTES) {
+            return this.oversized.get(accountId);
+        }
+        this.tableLock.readLock().lock();
+        try {
+            long slot = find(accountIdBytes);
+            return slot < 0 ? null : readBalance();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            this.tableLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return false if the account is already stored.
+     */
+    public boolean insert(String accountId, BigDecimal balance) {
+        byte[] accountIdBytes = accountId.getBytes(StandardCharsets.UTF_8);
+        if (accountIdBytes.length > MAX_ACCOUNT_ID_BYTES) {
+            return this.oversized.putIfAbsent(accountId, balance) == null;
+        }
+        byte[] unscaled = encodeBalance(balance);
+        while (true) {
+            this.tableLock.readLock().lock();
+            try {
+                // Reserving the slot up front keeps an empty slot for every probe to end at.
+                if (this.size.incrementAndGet() <= this.maximumSize) {
+                    boolean inserted = false;
+                    try {
+                        inserted = insertSlot(accountIdBytes, balance.scale(), unscaled);
+                        return inserted;
+                    } finally {
+                        if (!inserted) {
+                            this.size.decrementAndGet();
+                        }
+                    }
+                }
+                this.size.decrementAndGet();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                this.tableLock.readLock().unlock();
+            }
+            grow();
+        }
+    }
+
+    public void update(String accountId, BigDecimal balance) {
+        byte[] accountIdBytes = accountId.getBytes(StandardCharsets.UTF_8);
+        if (accountIdBytes.length > MAX_ACCOUNT_ID_BYTES) {
+            if (this.oversized.replace(accountId, balance) == null) {
+                throw new IllegalStateException("Account " + accountId + " is not stored.");
+            }
+            return;
+        }
+        byte[] unscaled = encodeBalance(balance);
+        this.tableLock.readLock().lock();
+        try {
+            long slot = find(accountIdBytes);
+            if (slot < 0) {
+                throw new IllegalStateException("Account " + accountId + " is not stored.");
+            }
+            Lock slotLock = slotLock(slot).writeLock();
+            slotLock.lock();
+            try {
+                writeSlot(slot, accountIdBytes, balance.scale(), unscaled);
+            } finally {
+                slotLock.unlock();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            this.tableLock.readLock().unlock();
+        }
+    }
+
+    public void clear() {
+        this.tableLock.writeLock().lock();
+        try {
+            this.channel.truncate(0);
+            allocate(this.channel, this.capacity);
+            this.size.set(0);
+            this.oversized.clear();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            this.tableLock.writeLock().unlock();
+        }
+    }
+
+    public long size() {
+        return this.size.get() + this.oversized.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    private void resize(long capacity) {
+        this.capacity = capacity;
+        this.maximumSize = capacity / 10 * 9;
+    }
+
+    private static void allocate(FileChannel channel, long capacity) throws IOException {
+        // Writing the last byte gives a sparse file, the unused slots read as zeros, i.e. empty.
+        channel.write(ByteBuffer.wrap(new byte[1]), capacity * SLOT_SIZE - 1);
+    }
+
+    /**
+     * Doubles the table into a new file. Occupied slots of the new table are tracked in memory, so the rehash reads
+     * the old file sequentially and only writes to the new one.
+     */
+    private void grow() {
+        this.tableLock.writeLock().lock();
+        try {
+            if (this.size.get() < this.maximumSize) {
+                // Grown by another thread meanwhile.
+                return;
+            }
+            long newCapacity = this.capacity * 2;
+            if (newCapacity > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Accounts file store cannot grow beyond " + this.capacity + " slots.");
+            }
+            Path grownFile = this.file.resolveSibling(this.file.getFileName() + ".grow");
+            FileChannel grownChannel = FileChannel.open(grownFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            allocate(grownChannel, newCapacity);
+            BitSet used = new BitSet((int) newCapacity);
+            long mask = newCapacity - 1;
+            int chunkSlots = (int) Math.min(this.capacity, GROW_CHUNK_SLOTS);
+            ByteBuffer chunk = ByteBuffer.allocate(chunkSlots * SLOT_SIZE);
+            for (long first = 0; first < this.capacity; first += chunkSlots) {
+                chunk.clear();
+                readFully(this.channel, chunk, first * SLOT_SIZE);
+                for (int i = 0; i < chunkSlots; i++) {
+                    int offset = i * SLOT_SIZE;
+                    if (chunk.get(offset + STATE) != USED) {
+                        continue;
+                    }
+                    byte[] accountIdBytes = new byte[chunk.get(offset + ACCOUNT_ID_LENGTH)];
+                    chunk.position(offset + ACCOUNT_ID);
+                    chunk.get(accountIdBytes);
+                    int slot = (int) (spread(accountIdBytes) & mask);
+                    while (used.get(slot)) {
+                        slot = (int) ((slot + 1) & mask);
+                    }
+                    used.set(slot);
+                    chunk.limit(offset + SLOT_SIZE).position(offset);
+                    writeFully(grownChannel, chunk, (long) slot * SLOT_SIZE);
+                    chunk.limit(chunk.capacity());
+                }
+            }
+            this.channel.close();
+            Files.move(grownFile, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            this.channel = grownChannel;
+            resize(newCapacity);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            this.tableLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Must be called holding the read lock of the table.
+     */
+    private boolean insertSlot(byte[] accountIdBytes, int scale, byte[] unscaled) throws IOException {
+        long mask = this.capacity - 1;
+        long slot = spread(accountIdBytes) & mask;
+        synchronized (this.insertLocks[(int) (slot & (STRIPES - 1))]) {
+            while (true) {
+                ByteBuffer buffer = readSlotLocked(slot);
+                if (buffer.get(STATE) != USED && claimSlot(slot, accountIdBytes, scale, unscaled)) {
+                    return true;
+                } else if (matches(this.slotBuffers.get(), accountIdBytes)) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+    }
+
+    /**
+     * @return false if another account took the slot since it was read, the slot is left in the slot buffer then.
+     */
+    private boolean claimSlot(long slot, byte[] accountIdBytes, int scale, byte[] unscaled) throws IOException {
+        Lock slotLock = slotLock(slot).writeLock();
+        slotLock.lock();
+        try {
+            if (readSlot(slot).get(STATE) == USED) {
+                return false;
+            }
+            writeSlot(slot, accountIdBytes, scale, unscaled);
+            return true;
+        } finally {
+            slotLock.unlock();
+        }
+    }
+
+    /**
+     * Leaves the found slot in the thread's slot buffer.
+     *
+     * @return the slot of the account, or -(empty slot) - 1 where it would be inserted.
+     */
+    private long find(byte[] accountIdBytes) throws IOException {
+        long mask = this.capacity - 1;
+        long slot = spread(accountIdBytes) & mask;
+        while (true) {
+            ByteBuffer buffer = readSlotLocked(slot);
+            if (buffer.get(STATE) != USED) {
+                return -slot - 1;
+            } else if (matches(buffer, accountIdBytes)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private ByteBuffer readSlotLocked(long slot) throws IOException {
+        Lock slotLock = slotLock(slot).readLock();
+        slotLock.lock();
+        try {
+            return readSlot(slot);
+        } finally {
+            slotLock.unlock();
+        }
+    }
+
+    private ByteBuffer readSlot(long slot) throws IOException {
+        ByteBuffer buffer = this.slotBuffers.get();
+        buffer.clear();
+        readFully(this.channel, buffer, slot * SLOT_SIZE);
+        return buffer;
+    }
+
+    private BigDecimal readBalance() {
+        ByteBuffer buffer = this.slotBuffers.get();
+        byte[] unscaled = new byte[buffer.get(UNSCALED_LENGTH)];
+        buffer.position(UNSCALED);
+        buffer.get(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), buffer.getInt(SCALE));
+    }
+
+    private void writeSlot(long slot, byte[] accountIdBytes, int scale, byte[] unscaled) throws IOException {
+        ByteBuffer buffer = this.slotBuffers.get();
+        buffer.clear();
+        buffer.put(STATE, USED);
+        buffer.put(ACCOUNT_ID_LENGTH, (byte) accountIdBytes.length);
+        buffer.position(ACCOUNT_ID);
+        buffer.put(accountIdBytes);
+        buffer.putInt(SCALE, scale);
+        buffer.put(UNSCALED_LENGTH, (byte) unscaled.length);
+        buffer.position(UNSCALED);
+        buffer.put(unscaled);
+        buffer.clear();
+        writeFully(this.channel, buffer, slot * SLOT_SIZE);
+    }
+
+    private ReadWriteLock slotLock(long slot) {
+        return this.slotLocks[(int) (slot & (STRIPES - 1))];
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long start = position - buffer.position();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, start + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of the accounts file store.");
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long start = position - buffer.position();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, start + buffer.position());
+        }
+    }
+
+    private static boolean matches(ByteBuffer buffer, byte[] accountIdBytes) {
+        if (buffer.get(ACCOUNT_ID_LENGTH) != accountIdBytes.length) {
+            return false;
+        }
+        for (int i = 0; i < accountIdBytes.length; i++) {
+            if (buffer.get(ACCOUNT_ID + i) != accountIdBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] encodeBalance(BigDecimal balance) {
+        byte[] unscaled = balance.unscaledValue().toByteArray();
+        if (unscaled.length > MAX_UNSCALED_BYTES) {
+            throw new IllegalArgumentException("Balance " + balance + " is too large for the accounts file store.");
+        }
+        return unscaled;
+    }
+
+    private static long spread(byte[] bytes) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            hash = (hash ^ b) * 0x100000001b3L;
+        }
+        return hash ^ (hash >>> 29);
+    }
+}
@@ -4,6 +4,7 @@ import com.db.awmd.challenge.domain.Account;
 import com.db.awmd.challenge.exception.DuplicateAccountIdException;
 
 import java.math.BigDecimal;
+import java.util.List;
 
 public interface AccountsRepository {
 
@@ -14,4 +15,10 @@ public interface AccountsRepository {
     void clearAccounts();
 
     void transactionalTransferMoney(Account accountFrom, Account accountTo, BigDecimal amount);
+
+    /**
+     * Adds {@code balanceChanges.get(i)} to the balance of {@code accounts.get(i)}; the changes sum up to zero.
+     * Every account is listed once and is locked by the caller.
+     */
+    void transactionalTransferMoney(List<Account> accounts, List<BigDecimal> balanceChanges);
 }
@@ -2,22 +2,38 @@ package com.db.awmd.challenge.repository;
 
 import com.db.awmd.challenge.domain.Account;
 import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 @Repository
+@ConditionalOnProperty(name = "accounts.repository", havingValue = "in-memory", matchIfMissing = true)
 public class AccountsRepositoryInMemory implements AccountsRepository {
 
     private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+    private final AccountsAggregates accountsAggregates;
+
+    @Autowired
+    public AccountsRepositoryInMemory(AccountsAggregates accountsAggregates) {
+        this.accountsAggregates = accountsAggregates;
+    }
 
     @Override
     public void createAccount(Account account) throws DuplicateAccountIdException {
-        Account previousAccount = accounts.putIfAbsent(account.getAccountId(), account);
-        if (previousAccount != null) {
+        // Registered before the account becomes visible, so no transfer can update its aggregates first.
+        boolean[] created = new boolean[1];
+        accounts.computeIfAbsent(account.getAccountId(), accountId -> {
+            accountsAggregates.onAccountCreated(account);
+            created[0] = true;
+            return account;
+        });
+        if (!created[0]) {
             throw new DuplicateAccountIdException(
                     "Account id " + account.getAccountId() + " already exists!");
         }
@@ -31,12 +47,27 @@ public class AccountsRepositoryInMemory implements AccountsRepository {
     @Override
     public void clearAccounts() {
         accounts.clear();
+        accountsAggregates.clear();
     }
 
     @Transactional
     @Override
     public void transactionalTransferMoney(Account accountFrom, Account accountTo, BigDecimal amount) {
-        accountFrom.setBalance(accountFrom.getBalance().subtract(amount));
-        accountTo.setBalance(accountTo.getBalance().add(amount));
+        BigDecimal accountFromBalance = accountFrom.getBalance();
+        BigDecimal accountToBalance = accountTo.getBalance();
+        accountFrom.setBalance(accountFromBalance.subtract(amount));
+        accountTo.setBalance(accountToBalance.add(amount));
+        accountsAggregates.onTransfer(accountFrom, accountFromBalance, accountTo, accountToBalance);
+    }
+
+    @Transactional
+    @Override
+    public void transactionalTransferMoney(List<Account> accounts, List<BigDecimal> balanceChanges) {
+        for (int i = 0; i < accounts.size(); i++) {
+            Account account = accounts.get(i);
+            BigDecimal balance = account.getBalance();
+            account.setBalance(balance.add(balanceChanges.get(i)));
+            accountsAggregates.onBalanceChanged(account, balance);
+        }
     }
 }
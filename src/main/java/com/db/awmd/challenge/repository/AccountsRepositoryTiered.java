@@ -0,0 +1,255 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountsCacheMetrics;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Two-tier accounts repository, enabled with {@code accounts.repository: tiered}. Every account is stored in an
+ * {@link AccountsFileStore}; the recently and frequently used ones are also kept on heap, bounded by
+ * {@code accounts.tiered.hot-size} and chosen by a {@link WindowTinyLfuPolicy}. Transfers only mark hot accounts
+ * dirty, the balance is written back to the file when the account is evicted.
+ * <p>
+ * A cold account is faulted in by the first thread asking for it while other threads asking for the same account
+ * wait for that load; lookups of other accounts are not blocked. An account is written back before it leaves the
+ * hot tier, under its monitor, so a fault never reads a stale balance and a transfer that still holds an evicted
+ * account writes its balances through to the file. If the account was faulted in again meanwhile, the write-through
+ * also refreshes that instance; a striped load lock orders the write-through with the file read of the fault.
+ * <p>
+ * The top accounts ranking of {@link AccountsAggregates} is disabled, it would keep an entry per account on heap;
+ * the total and the balance buckets are still maintained.
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "accounts.repository", havingValue = "tiered")
+public class AccountsRepositoryTiered implements AccountsRepository {
+
+    private final Map<String, HotAccount> hotAccounts = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<HotAccount>> faults = new ConcurrentHashMap<>();
+    private final AccountsAggregates accountsAggregates;
+    private final AccountsFileStore fileStore;
+    private final WindowTinyLfuPolicy policy;
+    private final Object[] loadLocks = new Object[1024];
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder writeBacks = new LongAdder();
+    private final LongAdder faultCount = new LongAdder();
+    private final LongAdder faultNanos = new LongAdder();
+    private final AtomicLong maxFaultNanos = new AtomicLong();
+
+    @Autowired
+    public AccountsRepositoryTiered(AccountsAggregates accountsAggregates,
+                                    @Value("${accounts.tiered.file:accounts.db}") String file,
+                                    @Value("${accounts.tiered.capacity:67108864}") long capacity,
+                                    @Value("${accounts.tiered.hot-size:100000}") int hotSize) throws IOException {
+        this.accountsAggregates = accountsAggregates;
+        this.accountsAggregates.disableRanking();
+        this.fileStore = new AccountsFileStore(Paths.get(file), capacity);
+        this.policy = new WindowTinyLfuPolicy(hotSize);
+        for (int i = 0; i < this.loadLocks.length; i++) {
+            this.loadLocks[i] = new Object();
+        }
+    }
+
+    @Override
+    public void createAccount(Account account) throws DuplicateAccountIdException {
+        if (!this.fileStore.insert(account.getAccountId(), account.getBalance())) {
+            throw new DuplicateAccountIdException(
+                    "Account id " + account.getAccountId() + " already exists!");
+        }
+        accountsAggregates.onAccountCreated(account);
+        if (this.hotAccounts.putIfAbsent(account.getAccountId(), new HotAccount(account)) == null) {
+            evict(this.policy.recordInsert(account.getAccountId()));
+        }
+    }
+
+    @Override
+    public Account getAccount(String accountId) {
+        HotAccount hotAccount = this.hotAccounts.get(accountId);
+        if (hotAccount != null) {
+            this.hits.increment();
+            this.policy.recordAccess(accountId);
+            return hotAccount.account;
+        }
+        this.misses.increment();
+        hotAccount = fault(accountId);
+        return hotAccount == null ? null : hotAccount.account;
+    }
+
+    @Override
+    public void clearAccounts() {
+        this.hotAccounts.clear();
+        this.policy.clear();
+        this.fileStore.clear();
+        accountsAggregates.clear();
+    }
+
+    @Transactional
+    @Override
+    public void transactionalTransferMoney(Account accountFrom, Account accountTo, BigDecimal amount) {
+        // Monitors in account id order, as AccountsService orders its locks, so callers without those cannot deadlock.
+        boolean fromFirst = accountFrom.getAccountId().compareTo(accountTo.getAccountId()) < 0;
+        synchronized (fromFirst ? accountFrom : accountTo) {
+            synchronized (fromFirst ? accountTo : accountFrom) {
+                BigDecimal accountFromBalance = accountFrom.getBalance();
+                BigDecimal accountToBalance = accountTo.getBalance();
+                accountFrom.setBalance(accountFromBalance.subtract(amount));
+                accountTo.setBalance(accountToBalance.add(amount));
+                accountsAggregates.onTransfer(accountFrom, accountFromBalance, accountTo, accountToBalance);
+                markDirty(accountFrom);
+                markDirty(accountTo);
+            }
+        }
+    }
+
+    @Transactional
+    @Override
+    public void transactionalTransferMoney(List<Account> accounts, List<BigDecimal> balanceChanges) {
+        // The caller holds the account locks, the monitors only order each update with the write-back of the account.
+        for (int i = 0; i < accounts.size(); i++) {
+            Account account = accounts.get(i);
+            synchronized (account) {
+                BigDecimal balance = account.getBalance();
+                account.setBalance(balance.add(balanceChanges.get(i)));
+                accountsAggregates.onBalanceChanged(account, balance);
+                markDirty(account);
+            }
+        }
+    }
+
+    public AccountsCacheMetrics getMetrics() {
+        long hitCount = this.hits.sum();
+        long missCount = this.misses.sum();
+        long faults = this.faultCount.sum();
+        return new AccountsCacheMetrics(this.hotAccounts.size(), this.fileStore.size(), hitCount, missCount,
+                hitCount + missCount == 0 ? 0 : (double) hitCount / (hitCount + missCount),
+                this.evictions.sum(), this.writeBacks.sum(),
+                faults == 0 ? 0 : this.faultNanos.sum() / faults / 1000, this.maxFaultNanos.get() / 1000);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        for (HotAccount hotAccount : this.hotAccounts.values()) {
+            writeBack(hotAccount);
+        }
+        this.fileStore.close();
+    }
+
+    private HotAccount fault(String accountId) {
+        CompletableFuture<HotAccount> loading = new CompletableFuture<>();
+        CompletableFuture<HotAccount> inFlight = this.faults.putIfAbsent(accountId, loading);
+        if (inFlight != null) {
+            return inFlight.join();
+        }
+        try {
+            HotAccount hotAccount = this.hotAccounts.get(accountId);
+            if (hotAccount == null) {
+                boolean inserted = false;
+                long start = System.nanoTime();
+                synchronized (loadLock(accountId)) {
+                    BigDecimal balance = this.fileStore.get(accountId);
+                    if (balance != null) {
+                        HotAccount loaded = new HotAccount(new Account(accountId, balance));
+                        hotAccount = this.hotAccounts.putIfAbsent(accountId, loaded);
+                        if (hotAccount == null) {
+                            hotAccount = loaded;
+                            inserted = true;
+                        }
+                    }
+                }
+                long elapsed = System.nanoTime() - start;
+                this.faultCount.increment();
+                this.faultNanos.add(elapsed);
+                this.maxFaultNanos.accumulateAndGet(elapsed, Math::max);
+                // Outside the load lock, the eviction takes account monitors.
+                if (inserted) {
+                    evict(this.policy.recordInsert(accountId));
+                }
+            }
+            loading.complete(hotAccount);
+            return hotAccount;
+        } catch (RuntimeException e) {
+            loading.completeExceptionally(e);
+            throw e;
+        } finally {
+            this.faults.remove(accountId, loading);
+        }
+    }
+
+    private void evict(List<String> accountIds) {
+        for (String accountId : accountIds) {
+            HotAccount hotAccount = this.hotAccounts.get(accountId);
+            if (hotAccount != null) {
+                synchronized (hotAccount.account) {
+                    writeBack(hotAccount);
+                    this.hotAccounts.remove(accountId, hotAccount);
+                }
+                this.evictions.increment();
+            }
+        }
+    }
+
+    private void writeBack(HotAccount hotAccount) {
+        if (hotAccount.dirty) {
+            this.fileStore.update(hotAccount.account.getAccountId(), hotAccount.account.getBalance());
+            hotAccount.dirty = false;
+            this.writeBacks.increment();
+        }
+    }
+
+    /**
+     * Must be called holding the account monitor.
+     */
+    private void markDirty(Account account) {
+        HotAccount hotAccount = this.hotAccounts.get(account.getAccountId());
+        if (hotAccount != null && hotAccount.account == account) {
+            hotAccount.dirty = true;
+            return;
+        }
+        // Evicted while the transfer was holding it. A fault that read the file before this update has put another
+        // instance with the old balance into the hot tier, it gets the new one. The monitor of that instance is only
+        // held by its eviction, which takes no other monitor, or by a transfer of the same account, which the account
+        // locks of AccountsService exclude.
+        synchronized (loadLock(account.getAccountId())) {
+            this.fileStore.update(account.getAccountId(), account.getBalance());
+            HotAccount reloaded = this.hotAccounts.get(account.getAccountId());
+            if (reloaded != null && reloaded.account != account) {
+                synchronized (reloaded.account) {
+                    reloaded.account.setBalance(account.getBalance());
+                }
+            }
+        }
+    }
+
+    private Object loadLock(String accountId) {
+        return this.loadLocks[(accountId.hashCode() & Integer.MAX_VALUE) % this.loadLocks.length];
+    }
+
+    private static final class HotAccount {
+        private final Account account;
+        private volatile boolean dirty;
+
+        private HotAccount(Account account) {
+            this.account = account;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.db.awmd.challenge.repository;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Striped {@link BigDecimal} sum in the spirit of {@link java.util.concurrent.atomic.LongAdder}: every thread
+ * CASes its own cell, so concurrent transfers do not contend on one shared total.
+ */
+final class BigDecimalAdder {
+
+    private final AtomicReferenceArray<BigDecimal> cells;
+    private final int mask;
+
+    BigDecimalAdder() {
+        int stripes = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) << 1;
+        this.cells = new AtomicReferenceArray<>(stripes);
+        this.mask = stripes - 1;
+        reset();
+    }
+
+    void add(BigDecimal value) {
+        int index = (int) (Thread.currentThread().getId() & this.mask);
+        BigDecimal current;
+        do {
+            current = this.cells.get(index);
+        } while (!this.cells.compareAndSet(index, current, current.add(value)));
+    }
+
+    BigDecimal sum() {
+        BigDecimal sum = BigDecimal.ZERO;
+        for (int i = 0; i < this.cells.length(); i++) {
+            sum = sum.add(this.cells.get(i));
+        }
+        return sum;
+    }
+
+    void reset() {
+        for (int i = 0; i < this.cells.length(); i++) {
+            this.cells.set(i, BigDecimal.ZERO);
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.domain.ScheduledTransaction;
+import com.db.awmd.challenge.domain.Transaction;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Append-only journal of pending scheduled transactions. Every schedule (or reschedule of a standing order) is
+ * written as an "A" record and every completed or cancelled one as an "R" record. The journal is compacted to the
+ * pending entries on startup and whenever it holds more than twice as many records as pending entries, so it stays
+ * proportional to the pending entries however many standing orders run between restarts. Persistence is disabled
+ * when {@code scheduler.journal-file} is empty.
+ * <p>
+ * Records are tab-separated lines; backslashes, tabs and line breaks in the account ids are escaped, so an id can
+ * neither split a record nor forge one.
+ * <p>
+ * Records are buffered; {@link #sync(long)} waits until a record has been forced to disk. Concurrent callers share
+ * an fsync: the first one forces everything buffered so far, the ones behind it usually find their record forced.
+ * A compacted journal is forced before it replaces the old one.
+ */
+@Slf4j
+@Repository
+public class ScheduledTransactionsJournal {
+
+    private static final String ADD = "A";
+    private static final String REMOVE = "R";
+    private static final String SEPARATOR = "\t";
+
+    private final Path journalFile;
+    private final long compactionMinRecords;
+    private final Object flushLock = new Object();
+    private Map<String, ScheduledTransaction> pending = new LinkedHashMap<>();
+    private FileChannel channel;
+    private BufferedWriter writer;
+    private long records;
+    private long written;
+    private volatile long flushed;
+
+    public ScheduledTransactionsJournal(String journalFile) {
+        this(journalFile, 100_000);
+    }
+
+    @Autowired
+    public ScheduledTransactionsJournal(@Value("${scheduler.journal-file:}") String journalFile,
+                                        @Value("${scheduler.journal-compaction-min-records:100000}")
+                                                long compactionMinRecords) {
+        this.journalFile = journalFile.isEmpty() ? null : Paths.get(journalFile);
+        this.compactionMinRecords = compactionMinRecords;
+    }
+
+    /**
+     * Replays the journal and rewrites it with the still pending entries.
+     */
+    public synchronized Collection<ScheduledTransaction> load() {
+        if (this.journalFile == null) {
+            return new ArrayList<>();
+        }
+        Map<String, ScheduledTransaction> pending = new LinkedHashMap<>();
+        try {
+            if (Files.exists(this.journalFile)) {
+                try (BufferedReader reader = Files.newBufferedReader(this.journalFile, StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        String[] record = line.split(SEPARATOR);
+                        if (ADD.equals(record[0]) && record.length == 7) {
+                            pending.put(record[1], parse(record));
+                        } else if (REMOVE.equals(record[0]) && record.length == 2) {
+                            pending.remove(record[1]);
+                        } else {
+                            // A torn last line after a crash, the entry was never acknowledged.
+                            log.warn("Skipping corrupted journal record {}", line);
+                        }
+                    }
+                }
+            }
+            this.pending = pending;
+            compact();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        log.info("Loaded {} scheduled transactions from {}", pending.size(), this.journalFile);
+        return new ArrayList<>(pending.values());
+    }
+
+    /**
+     * @return the position to pass to {@link #sync(long)}.
+     */
+    public synchronized long append(ScheduledTransaction scheduledTransaction) {
+        if (this.journalFile == null) {
+            return 0;
+        }
+        this.pending.put(scheduledTransaction.getScheduledTransactionId(), scheduledTransaction);
+        return write(format(scheduledTransaction));
+    }
+
+    /**
+     * @return the position to pass to {@link #sync(long)}.
+     */
+    public synchronized long remove(String scheduledTransactionId) {
+        if (this.journalFile == null || this.pending.remove(scheduledTransactionId) == null) {
+            return this.written;
+        }
+        return write(REMOVE + SEPARATOR + scheduledTransactionId);
+    }
+
+    /**
+     * Blocks until the record at {@code position} and every record before it are on disk.
+     */
+    public void sync(long position) {
+        if (this.flushed >= position) {
+            return;
+        }
+        synchronized (this.flushLock) {
+            if (this.flushed >= position) {
+                return;
+            }
+            long forced;
+            FileChannel forcedChannel;
+            synchronized (this) {
+                forced = this.written;
+                forcedChannel = this.channel;
+                try {
+                    if (this.writer != null) {
+                        this.writer.flush();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            // Appends go on while the channel is forced, they are picked up by the next sync.
+            try {
+                if (forcedChannel != null) {
+                    forcedChannel.force(false);
+                }
+            } catch (ClosedChannelException e) {
+                // Closed by a compaction, which forced the records before.
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (this.flushed < forced) {
+                this.flushed = forced;
+            }
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (this.writer != null) {
+            this.writer.flush();
+            this.channel.force(false);
+            this.writer.close();
+            this.writer = null;
+            this.channel = null;
+        }
+        this.flushed = this.written;
+    }
+
+    private void compact() throws IOException {
+        close();
+        Path parent = this.journalFile.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path compacted = Files.createTempFile(parent, this.journalFile.getFileName().toString(), ".tmp");
+        try (FileChannel compactedChannel = FileChannel.open(compacted, StandardOpenOption.WRITE);
+             BufferedWriter compactedWriter = new BufferedWriter(
+                     Channels.newWriter(compactedChannel, StandardCharsets.UTF_8.newEncoder(), -1))) {
+            for (ScheduledTransaction scheduledTransaction : this.pending.values()) {
+                compactedWriter.write(format(scheduledTransaction));
+                compactedWriter.newLine();
+            }
+            compactedWriter.flush();
+            compactedChannel.force(false);
+        }
+        Files.move(compacted, this.journalFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory(parent);
+        this.records = this.pending.size();
+    }
+
+    private static void forceDirectory(Path directory) {
+        // Makes the rename durable; not every platform can open a directory, there the rename is left to the OS.
+        try (FileChannel directoryChannel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            directoryChannel.force(true);
+        } catch (IOException e) {
+            log.debug("Cannot force directory {}: {}", directory, e.getMessage());
+        }
+    }
+
+    private long write(String record) {
+        try {
+            if (this.writer == null) {
+                this.channel = FileChannel.open(this.journalFile, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                this.writer = new BufferedWriter(
+                        Channels.newWriter(this.channel, StandardCharsets.UTF_8.newEncoder(), -1));
+            }
+            this.writer.write(record);
+            this.writer.newLine();
+            this.records++;
+            this.written++;
+            if (this.records > this.compactionMinRecords && this.records > 2L * this.pending.size()) {
+                compact();
+            }
+            return this.written;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String format(ScheduledTransaction scheduledTransaction) {
+        Transaction transaction = scheduledTransaction.getTransaction();
+        return ADD + SEPARATOR + scheduledTransaction.getScheduledTransactionId()
+                + SEPARATOR + escape(transaction.getAccountFromId())
+                + SEPARATOR + escape(transaction.getAccountToId())
+                + SEPARATOR + transaction.getAmount().toPlainString()
+                + SEPARATOR + scheduledTransaction.getExecuteAt()
+                + SEPARATOR + scheduledTransaction.getRepeatIntervalMillis();
+    }
+
+    private static ScheduledTransaction parse(String[] record) {
+        Transaction transaction = new Transaction(unescape(record[2]), unescape(record[3]), new BigDecimal(record[4]));
+        ScheduledTransaction scheduledTransaction = new ScheduledTransaction(transaction,
+                Long.parseLong(record[5]), Long.parseLong(record[6]));
+        scheduledTransaction.setScheduledTransactionId(record[1]);
+        return scheduledTransaction;
+    }
+
+    private static String escape(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    escaped.append("\\\\");
+                    break;
+                case '\t':
+                    escaped.append("\\t");
+                    break;
+                case '\n':
+                    escaped.append("\\n");
+                    break;
+                case '\r':
+                    escaped.append("\\r");
+                    break;
+                default:
+                    escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    private static String unescape(String value) {
+        StringBuilder unescaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                c = value.charAt(++i);
+                c = c == 't' ? '\t' : c == 'n' ? '\n' : c == 'r' ? '\r' : c;
+            }
+            unescaped.append(c);
+        }
+        return unescaped.toString();
+    }
+}
@@ -0,0 +1,140 @@
+package com.db.awmd.challenge.repository;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * W-TinyLFU eviction policy (Einziger, Friedman &amp; Manes): new keys enter a small LRU window, keys leaving the
+ * window are admitted to the main LRU region only if a count-min sketch of recent access frequencies rates them
+ * above the main region's victim. A scan of dormant accounts therefore cannot flush the frequently used ones.
+ * <p>
+ * Hits are recorded lossily: the sketch is always incremented, the recency order only when its lock is free, so
+ * reads never wait for each other.
+ */
+final class WindowTinyLfuPolicy {
+
+    private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL,
+            0xcbf29ce484222325L};
+    private static final int MAXIMUM_FREQUENCY = 15;
+
+    private final int windowMaximumSize;
+    private final int mainMaximumSize;
+    private final LinkedHashMap<String, Boolean> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Boolean> main = new LinkedHashMap<>(16, 0.75f, true);
+    private final ReentrantLock lock = new ReentrantLock();
+    private final AtomicIntegerArray sketch;
+    private final int sketchMask;
+    private final long sampleSize;
+    private final AtomicLong additions = new AtomicLong();
+
+    WindowTinyLfuPolicy(int maximumSize) {
+        this.windowMaximumSize = Math.max(1, maximumSize / 100);
+        this.mainMaximumSize = Math.max(1, maximumSize - this.windowMaximumSize);
+        int sketchSize = Integer.highestOneBit(Math.max(16, maximumSize) - 1) << 1;
+        this.sketch = new AtomicIntegerArray(sketchSize);
+        this.sketchMask = sketchSize - 1;
+        this.sampleSize = 10L * sketchSize;
+    }
+
+    void recordAccess(String key) {
+        increment(key);
+        if (this.lock.tryLock()) {
+            try {
+                if (this.window.get(key) == null) {
+                    this.main.get(key);
+                }
+            } finally {
+                this.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * @return the keys to evict to make room for the new one, possibly including the new key itself.
+     */
+    List<String> recordInsert(String key) {
+        increment(key);
+        List<String> evicted = new ArrayList<>(1);
+        this.lock.lock();
+        try {
+            this.window.put(key, Boolean.TRUE);
+            while (this.window.size() > this.windowMaximumSize) {
+                String candidate = removeEldest(this.window);
+                if (this.main.size() < this.mainMaximumSize) {
+                    this.main.put(candidate, Boolean.TRUE);
+                } else {
+                    String victim = this.main.keySet().iterator().next();
+                    if (frequency(candidate) > frequency(victim)) {
+                        this.main.remove(victim);
+                        this.main.put(candidate, Boolean.TRUE);
+                        evicted.add(victim);
+                    } else {
+                        evicted.add(candidate);
+                    }
+                }
+            }
+        } finally {
+            this.lock.unlock();
+        }
+        return evicted;
+    }
+
+    void clear() {
+        this.lock.lock();
+        try {
+            this.window.clear();
+            this.main.clear();
+            for (int i = 0; i < this.sketch.length(); i++) {
+                this.sketch.set(i, 0);
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    int frequency(String key) {
+        int hash = key.hashCode();
+        int frequency = MAXIMUM_FREQUENCY;
+        for (long seed : SEEDS) {
+            frequency = Math.min(frequency, this.sketch.get(indexOf(hash, seed)));
+        }
+        return frequency;
+    }
+
+    private void increment(String key) {
+        int hash = key.hashCode();
+        for (long seed : SEEDS) {
+            int index = indexOf(hash, seed);
+            int count;
+            do {
+                count = this.sketch.get(index);
+            } while (count < MAXIMUM_FREQUENCY && !this.sketch.compareAndSet(index, count, count + 1));
+        }
+        if (this.additions.incrementAndGet() % this.sampleSize == 0) {
+            // Ageing: halve all counters, so that the sketch follows changes in popularity.
+            for (int i = 0; i < this.sketch.length(); i++) {
+                int count;
+                do {
+                    count = this.sketch.get(i);
+                } while (!this.sketch.compareAndSet(i, count, count >>> 1));
+            }
+        }
+    }
+
+    private int indexOf(int hash, long seed) {
+        long mixed = (hash + seed) * 0x9e3779b97f4a7c15L;
+        return (int) (mixed >>> 32) & this.sketchMask;
+    }
+
+    private static String removeEldest(LinkedHashMap<String, Boolean> region) {
+        Iterator<String> iterator = region.keySet().iterator();
+        String eldest = iterator.next();
+        iterator.remove();
+        return eldest;
+    }
+}
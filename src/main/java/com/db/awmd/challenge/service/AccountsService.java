@@ -1,34 +1,62 @@
 package com.db.awmd.challenge.service;
 
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.MultiLegTransaction;
 import com.db.awmd.challenge.domain.Transaction;
 import com.db.awmd.challenge.exception.IncorrectAccountIdException;
 import com.db.awmd.challenge.exception.InsufficientBalanceException;
 import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryTiered;
 import lombok.Getter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 @Service
 public class AccountsService {
 
+    private static final int LOCK_STRIPES = 4096;
+
     private Map<String, ReentrantReadWriteLock> readWriteAccountLock = new ConcurrentHashMap<>();
+    // The tiered repository keeps most accounts off heap, a lock per account would not. Its accounts share a fixed
+    // number of locks instead, picked by the id hash; null with one lock per account.
+    private final ReentrantReadWriteLock[] lockStripes;
 
     @Getter
     private final AccountsRepository accountsRepository;
     private final NotificationService notificationService;
+    private final BalanceUpdatesPublisher balanceUpdatesPublisher;
 
     @Autowired
-    public AccountsService(AccountsRepository accountsRepository, NotificationService notificationService) {
+    public AccountsService(AccountsRepository accountsRepository, NotificationService notificationService,
+                           BalanceUpdatesPublisher balanceUpdatesPublisher) {
         this.accountsRepository = accountsRepository;
         this.notificationService = notificationService;
+        this.balanceUpdatesPublisher = balanceUpdatesPublisher;
+        if (accountsRepository instanceof AccountsRepositoryTiered) {
+            this.lockStripes = new ReentrantReadWriteLock[LOCK_STRIPES];
+            for (int i = 0; i < LOCK_STRIPES; i++) {
+                this.lockStripes[i] = new ReentrantReadWriteLock();
+            }
+        } else {
+            this.lockStripes = null;
+        }
     }
 
     private ReentrantReadWriteLock getLock(String accountId) {
+        if (this.lockStripes != null) {
+            return this.lockStripes[lockStripe(accountId)];
+        }
         ReentrantReadWriteLock reentrantReadWriteLock = readWriteAccountLock.putIfAbsent(accountId, new ReentrantReadWriteLock());
         if (reentrantReadWriteLock == null) {
             reentrantReadWriteLock = readWriteAccountLock.get(accountId);
@@ -36,6 +64,22 @@ public class AccountsService {
         return reentrantReadWriteLock;
     }
 
+    private static int lockStripe(String accountId) {
+        int hash = accountId.hashCode();
+        return (hash ^ (hash >>> 16)) & (LOCK_STRIPES - 1);
+    }
+
+    /**
+     * The order locks are taken in: by account id, or by stripe when accounts share locks, as two accounts may map
+     * to stripes in the opposite order of their ids. Accounts on the same stripe take the reentrant lock twice.
+     */
+    private int compareLocks(String accountId, String otherAccountId) {
+        if (this.lockStripes != null) {
+            return Integer.compare(lockStripe(accountId), lockStripe(otherAccountId));
+        }
+        return accountId.compareTo(otherAccountId);
+    }
+
     public void createAccount(Account account) {
         this.accountsRepository.createAccount(account);
     }
@@ -58,7 +102,7 @@ public class AccountsService {
         }
 
         ReentrantReadWriteLock.WriteLock[] writeLocks = new ReentrantReadWriteLock.WriteLock[2];
-        if (accountFromId.compareTo(accountToId) < 0) {
+        if (this.compareLocks(accountFromId, accountToId) < 0) {
             writeLocks[0] = this.getLock(accountFromId).writeLock();
             writeLocks[1] = this.getLock(accountToId).writeLock();
         } else {
@@ -85,6 +129,9 @@ public class AccountsService {
                         "Account is not found by id " + accountToId);
             }
             this.accountsRepository.transactionalTransferMoney(accountFrom, accountTo, transaction.getAmount());
+            // Published under the locks so that subscribers never see the balances of an account out of order.
+            this.balanceUpdatesPublisher.publish(accountFrom);
+            this.balanceUpdatesPublisher.publish(accountTo);
         } finally {
             writeLocks[0].unlock();
             writeLocks[1].unlock();
@@ -98,4 +145,81 @@ public class AccountsService {
                 + " from account " + accountFrom.getAccountId();
         notificationService.notifyAboutTransfer(accountTo, accountToMessage);
     }
+
+    /**
+     * Applies all legs or none. Every account is locked once, in the same order as {@link #createTransaction},
+     * and its balance is checked once against its net debit, so an account may pay out more in one leg than it has
+     * as long as other legs of the same transfer cover it. Each account gets a single notification.
+     */
+    public void createMultiLegTransaction(MultiLegTransaction multiLegTransaction) {
+        Map<String, BigDecimal> balanceChanges = new TreeMap<>();
+        Map<String, Set<String>> counterparties = new TreeMap<>();
+        for (Transaction leg : multiLegTransaction.getLegs()) {
+            String accountFromId = leg.getAccountFromId();
+            String accountToId = leg.getAccountToId();
+            if (accountFromId.equals(accountToId)) {
+                throw new IncorrectAccountIdException("Cannot transfer from account to itself.");
+            }
+            balanceChanges.merge(accountFromId, leg.getAmount().negate(), BigDecimal::add);
+            balanceChanges.merge(accountToId, leg.getAmount(), BigDecimal::add);
+            counterparties.computeIfAbsent(accountFromId, accountId -> new TreeSet<>()).add(accountToId);
+            counterparties.computeIfAbsent(accountToId, accountId -> new TreeSet<>()).add(accountFromId);
+        }
+        // An account whose legs net to zero only passes the money on, its balance is not touched. It is still looked
+        // up under its read lock like in getAccount, so a lookup that faults it in from the tiered repository cannot
+        // race a transfer of that account.
+        for (Iterator<Map.Entry<String, BigDecimal>> it = balanceChanges.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, BigDecimal> balanceChange = it.next();
+            if (balanceChange.getValue().signum() == 0) {
+                if (this.getAccount(balanceChange.getKey()) == null) {
+                    throw new IncorrectAccountIdException("Account is not found by id " + balanceChange.getKey());
+                }
+                it.remove();
+            }
+        }
+
+        List<String> lockOrder = new ArrayList<>(balanceChanges.keySet());
+        lockOrder.sort(this::compareLocks);
+        List<ReentrantReadWriteLock.WriteLock> writeLocks = new ArrayList<>(lockOrder.size());
+        for (String accountId : lockOrder) {
+            writeLocks.add(this.getLock(accountId).writeLock());
+        }
+        int locked = 0;
+        List<Account> accounts = new ArrayList<>(balanceChanges.size());
+        try {
+            for (ReentrantReadWriteLock.WriteLock writeLock : writeLocks) {
+                writeLock.lock();
+                locked++;
+            }
+
+            for (Map.Entry<String, BigDecimal> balanceChange : balanceChanges.entrySet()) {
+                Account account = this.accountsRepository.getAccount(balanceChange.getKey());
+                if (account == null) {
+                    throw new IncorrectAccountIdException(
+                            "Account is not found by id " + balanceChange.getKey());
+                } else if (account.getBalance().add(balanceChange.getValue()).signum() < 0) {
+                    throw new InsufficientBalanceException(
+                            "An account with id " + account.getAccountId() + " has an insufficient balance.");
+                }
+                accounts.add(account);
+            }
+            this.accountsRepository.transactionalTransferMoney(accounts, new ArrayList<>(balanceChanges.values()));
+            for (Account account : accounts) {
+                this.balanceUpdatesPublisher.publish(account);
+            }
+        } finally {
+            for (int i = locked - 1; i >= 0; i--) {
+                writeLocks.get(i).unlock();
+            }
+        }
+
+        for (Account account : accounts) {
+            BigDecimal balanceChange = balanceChanges.get(account.getAccountId());
+            String message = balanceChange.signum() < 0
+                    ? "You transferred $" + balanceChange.negate() + " to accounts "
+                    : "You received $" + balanceChange + " from accounts ";
+            notificationService.notifyAboutTransfer(account,
+                    message + String.join(", ", counterparties.get(account.getAccountId())));
+        }
+    }
 }
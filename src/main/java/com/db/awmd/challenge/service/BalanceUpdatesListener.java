@@ -0,0 +1,13 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+
+import java.io.IOException;
+
+public interface BalanceUpdatesListener {
+
+  /**
+   * @throws IOException if the subscriber is gone, the subscription is cancelled then.
+   */
+  void onBalanceUpdate(Account account) throws IOException;
+}
@@ -0,0 +1,238 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pushes balance changes to subscribers. Publishing only records the latest balance in each interested
+ * subscription and hands delivery over to the dispatcher threads; a subscription buffers at most one balance per
+ * subscribed account (latest value wins), so a slow consumer skips intermediate balances instead of growing a
+ * queue or slowing down transfers.
+ * <p>
+ * A delivery blocks its dispatcher thread until the subscriber has taken the update. A subscriber that does not
+ * take an update within {@code balance-updates.send-timeout-millis} is cancelled, its stall action is run (closing
+ * the connection, which fails the blocked write), and the dispatcher gets an extra thread until the stalled delivery
+ * returns, so stalled subscribers do not hold the threads the other subscribers are served by. Stall actions run on
+ * their own threads, one blocking action cannot keep the watchdog from the other stalled subscribers. At most
+ * {@code balance-updates.max-stalled-threads} extra threads are added.
+ */
+@Slf4j
+@Service
+public class BalanceUpdatesPublisher {
+
+    private final Map<String, Set<Subscription>> subscriptions = new ConcurrentHashMap<>();
+    private final Set<Subscription> delivering = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor dispatcher;
+    private final ScheduledExecutorService watchdog;
+    private final ExecutorService stallActions;
+    private final long sendTimeoutMillis;
+    private final int maxStalledThreads;
+    // Guarded by this.
+    private int stalledThreads;
+
+    @Autowired
+    public BalanceUpdatesPublisher(@Value("${balance-updates.dispatcher-threads:2}") int dispatcherThreads,
+                                   @Value("${balance-updates.send-timeout-millis:5000}") long sendTimeoutMillis,
+                                   @Value("${balance-updates.max-stalled-threads:16}") int maxStalledThreads) {
+        this.dispatcher = new ThreadPoolExecutor(dispatcherThreads, dispatcherThreads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>());
+        this.sendTimeoutMillis = sendTimeoutMillis;
+        this.maxStalledThreads = maxStalledThreads;
+        this.stallActions = Executors.newCachedThreadPool();
+        this.watchdog = Executors.newSingleThreadScheduledExecutor();
+        long period = Math.max(1, sendTimeoutMillis / 4);
+        this.watchdog.scheduleAtFixedRate(this::cancelStalled, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        this.watchdog.shutdownNow();
+        this.stallActions.shutdownNow();
+        this.dispatcher.shutdownNow();
+    }
+
+    public Subscription subscribe(Collection<String> accountIds, BalanceUpdatesListener listener) {
+        Subscription subscription = new Subscription(accountIds, listener);
+        for (String accountId : subscription.accountIds) {
+            this.subscriptions.compute(accountId, (id, accountSubscriptions) -> {
+                if (accountSubscriptions == null) {
+                    accountSubscriptions = ConcurrentHashMap.newKeySet();
+                }
+                accountSubscriptions.add(subscription);
+                return accountSubscriptions;
+            });
+        }
+        return subscription;
+    }
+
+    /**
+     * Must be called while the account is locked, so that the balances of an account are published in order.
+     */
+    public void publish(Account account) {
+        Set<Subscription> accountSubscriptions = this.subscriptions.get(account.getAccountId());
+        if (accountSubscriptions == null) {
+            return;
+        }
+        BigDecimal balance = account.getBalance();
+        for (Subscription subscription : accountSubscriptions) {
+            subscription.offer(account.getAccountId(), balance);
+        }
+    }
+
+    private void cancelStalled() {
+        long now = System.nanoTime();
+        for (Subscription subscription : this.delivering) {
+            long deliveringSince = subscription.deliveringSince;
+            if (deliveringSince != 0 && now - deliveringSince > TimeUnit.MILLISECONDS.toNanos(this.sendTimeoutMillis)
+                    && markStalled(subscription)) {
+                log.info("Cancelling balance updates subscription stalled for over {} ms", this.sendTimeoutMillis);
+                subscription.cancel();
+                Runnable stallAction = subscription.stallAction;
+                this.stallActions.execute(() -> {
+                    try {
+                        stallAction.run();
+                    } catch (RuntimeException e) {
+                        log.warn("Stall action of a balance updates subscription failed", e);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Adds a dispatcher thread for the stalled delivery unless {@code maxStalledThreads} are added already.
+     *
+     * @return false if the delivery has returned meanwhile or was marked stalled already.
+     */
+    private synchronized boolean markStalled(Subscription subscription) {
+        if (!this.delivering.contains(subscription) || subscription.stalled) {
+            return false;
+        }
+        subscription.stalled = true;
+        if (this.stalledThreads < this.maxStalledThreads) {
+            subscription.threadAdded = true;
+            this.stalledThreads++;
+            resizeDispatcher(1);
+        }
+        return true;
+    }
+
+    private synchronized void removeStalledThread(Subscription subscription) {
+        this.delivering.remove(subscription);
+        subscription.stalled = false;
+        if (subscription.threadAdded) {
+            subscription.threadAdded = false;
+            this.stalledThreads--;
+            resizeDispatcher(-1);
+        }
+    }
+
+    private void resizeDispatcher(int delta) {
+        // The maximum may never drop below the core size.
+        if (delta > 0) {
+            this.dispatcher.setMaximumPoolSize(this.dispatcher.getMaximumPoolSize() + delta);
+            this.dispatcher.setCorePoolSize(this.dispatcher.getCorePoolSize() + delta);
+        } else {
+            this.dispatcher.setCorePoolSize(this.dispatcher.getCorePoolSize() + delta);
+            this.dispatcher.setMaximumPoolSize(this.dispatcher.getMaximumPoolSize() + delta);
+        }
+    }
+
+    public final class Subscription {
+
+        private final Set<String> accountIds;
+        private final BalanceUpdatesListener listener;
+        private final Map<String, BigDecimal> latestBalances = new ConcurrentHashMap<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile Runnable stallAction = () -> { };
+        private volatile long deliveringSince;
+        private volatile boolean cancelled;
+        // Guarded by the publisher.
+        private boolean stalled;
+        private boolean threadAdded;
+
+        private Subscription(Collection<String> accountIds, BalanceUpdatesListener listener) {
+            this.accountIds = ConcurrentHashMap.newKeySet();
+            this.accountIds.addAll(accountIds);
+            this.listener = listener;
+        }
+
+        /**
+         * Sets what to do once a delivery has stalled, typically closing the subscriber's connection.
+         */
+        public void onStall(Runnable stallAction) {
+            this.stallAction = stallAction;
+        }
+
+        public void cancel() {
+            this.cancelled = true;
+            for (String accountId : this.accountIds) {
+                subscriptions.computeIfPresent(accountId, (id, accountSubscriptions) -> {
+                    accountSubscriptions.remove(this);
+                    return accountSubscriptions.isEmpty() ? null : accountSubscriptions;
+                });
+            }
+            this.latestBalances.clear();
+        }
+
+        private void offer(String accountId, BigDecimal balance) {
+            this.latestBalances.put(accountId, balance);
+            schedule();
+        }
+
+        private void schedule() {
+            if (!this.cancelled && this.scheduled.compareAndSet(false, true)) {
+                try {
+                    dispatcher.execute(this::deliver);
+                } catch (RejectedExecutionException e) {
+                    this.scheduled.set(false);
+                }
+            }
+        }
+
+        private void deliver() {
+            delivering.add(this);
+            try {
+                for (String accountId : this.latestBalances.keySet()) {
+                    BigDecimal balance = this.latestBalances.remove(accountId);
+                    if (balance != null && !this.cancelled) {
+                        this.deliveringSince = System.nanoTime();
+                        this.listener.onBalanceUpdate(new Account(accountId, balance));
+                        this.deliveringSince = 0;
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                log.info("Cancelling balance updates subscription: {}", e.getMessage());
+                cancel();
+            } finally {
+                this.deliveringSince = 0;
+                // The thread added for a stalled delivery is not needed any more.
+                removeStalledThread(this);
+                this.scheduled.set(false);
+            }
+            // Balances offered while the last one was being delivered.
+            if (!this.latestBalances.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.db.awmd.challenge.service;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Hierarchical timing wheel (Varghese &amp; Lauck). Every level has {@code wheelSize} buckets; a bucket of the
+ * first level spans {@code tickMillis}, a bucket of every next level spans the whole interval of the previous one.
+ * Adding an entry and expiring a tick are O(1) regardless of the number of pending entries; entries scheduled
+ * far ahead are cascaded down to finer levels as the clock reaches them. The span of a level saturates at
+ * {@code Long.MAX_VALUE}, so the topmost level holds any deadline without overflowing.
+ * <p>
+ * The wheel is not thread-safe, it is driven by a single scheduler thread.
+ */
+public class HierarchicalTimingWheel<T> {
+
+    private final long tickMillis;
+    private final int wheelSize;
+    private final long interval;
+    private final Deque<Entry<T>>[] buckets;
+    private final HierarchicalTimingWheel<T> root;
+    private HierarchicalTimingWheel<T> overflowWheel;
+    private long currentTime;
+    private int size;
+
+    public HierarchicalTimingWheel(long tickMillis, int wheelSize, long startMillis) {
+        this(tickMillis, wheelSize, startMillis, null);
+    }
+
+    private HierarchicalTimingWheel(long tickMillis, int wheelSize, long startMillis, HierarchicalTimingWheel<T> root) {
+        if (tickMillis <= 0 || wheelSize <= 1) {
+            throw new IllegalArgumentException("Tick must be positive and wheel size greater than one.");
+        }
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+        this.interval = tickMillis > Long.MAX_VALUE / wheelSize ? Long.MAX_VALUE : tickMillis * wheelSize;
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Deque<Entry<T>>[] buckets = new Deque[wheelSize];
+        this.buckets = buckets;
+        for (int i = 0; i < wheelSize; i++) {
+            this.buckets[i] = new ArrayDeque<>();
+        }
+        this.root = root == null ? this : root;
+        this.currentTime = startMillis - (startMillis % tickMillis);
+    }
+
+    /**
+     * Items expire on the first tick at or after their deadline, never earlier.
+     *
+     * @return false if the deadline is already due, in this case the item is not added and should be run now.
+     */
+    public boolean add(long deadlineMillis, T item) {
+        // Buckets expire at the start of their slot, shift the key so that the slot starts at or after the deadline.
+        long key = deadlineMillis > Long.MAX_VALUE - this.tickMillis + 1
+                ? Long.MAX_VALUE : deadlineMillis + this.tickMillis - 1;
+        if (addEntry(new Entry<>(key, item))) {
+            this.size++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Moves the clock forward to {@code nowMillis} and collects every item whose deadline has passed.
+     */
+    public void advanceClock(long nowMillis, List<T> expired) {
+        while (nowMillis - this.currentTime >= this.tickMillis) {
+            this.currentTime += this.tickMillis;
+            flushBucket(expired);
+            if (this.overflowWheel != null) {
+                this.overflowWheel.advanceClock(this.currentTime, expired);
+            }
+        }
+    }
+
+    /**
+     * Drops every item matching {@code filter}, it walks all buckets of all levels.
+     *
+     * @return the number of items dropped.
+     */
+    public int removeIf(Predicate<T> filter) {
+        int removed = 0;
+        for (HierarchicalTimingWheel<T> wheel = this; wheel != null; wheel = wheel.overflowWheel) {
+            for (Deque<Entry<T>> bucket : wheel.buckets) {
+                int before = bucket.size();
+                bucket.removeIf(entry -> filter.test(entry.item));
+                removed += before - bucket.size();
+            }
+        }
+        this.root.size -= removed;
+        return removed;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public long getCurrentTime() {
+        return this.currentTime;
+    }
+
+    private void flushBucket(List<T> expired) {
+        Deque<Entry<T>> bucket = this.buckets[bucketIndex(this.currentTime)];
+        Entry<T> entry;
+        while ((entry = bucket.poll()) != null) {
+            // Cascade into a finer level of the wheel or expire when there is no finer level left.
+            if (!this.root.addEntry(entry)) {
+                this.root.size--;
+                expired.add(entry.item);
+            }
+        }
+    }
+
+    private boolean addEntry(Entry<T> entry) {
+        // Differences instead of sums: the current time plus the span of a top level would overflow.
+        if (entry.deadline - this.currentTime < this.tickMillis) {
+            return false;
+        } else if (this.interval == Long.MAX_VALUE || entry.deadline - this.currentTime < this.interval) {
+            this.buckets[bucketIndex(entry.deadline)].add(entry);
+            return true;
+        } else {
+            if (this.overflowWheel == null) {
+                this.overflowWheel = new HierarchicalTimingWheel<>(this.interval, this.wheelSize, this.currentTime, this.root);
+            }
+            return this.overflowWheel.addEntry(entry);
+        }
+    }
+
+    private int bucketIndex(long timeMillis) {
+        return (int) ((timeMillis / this.tickMillis) % this.wheelSize);
+    }
+
+    private static final class Entry<T> {
+        private final long deadline;
+        private final T item;
+
+        private Entry(long deadline, T item) {
+            this.deadline = deadline;
+            this.item = item;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.ScheduledTransaction;
+import com.db.awmd.challenge.domain.SchedulerMetrics;
+import com.db.awmd.challenge.domain.Transaction;
+import com.db.awmd.challenge.exception.IncorrectAccountIdException;
+import com.db.awmd.challenge.exception.IncorrectScheduleException;
+import com.db.awmd.challenge.repository.ScheduledTransactionsJournal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Executes future-dated and recurring transactions. Incoming schedules are handed over through a lock-free inbox
+ * to a single ticker thread that owns a {@link HierarchicalTimingWheel}; due entries are released to the transfer
+ * workers at most {@code scheduler.max-executions-per-tick} per tick, so a midnight peak of standing orders is
+ * spread over the following ticks instead of hitting the accounts all at once.
+ * <p>
+ * A due entry is removed from (or rescheduled in) the journal before the transfer runs: a crash in between loses
+ * one execution rather than debiting an account twice. The pending entries are tracked by id; a cancel and the
+ * reschedule of a standing order update that entry atomically, so a cancelled standing order never comes back.
+ * Cancelled entries are purged from the wheel once they outnumber the pending ones.
+ * <p>
+ * A standing order repeats at least every tick. Its next execution keeps the phase of the first one; periods
+ * missed while the service was down or behind are skipped instead of being fired in a burst.
+ */
+@Slf4j
+@Service
+public class ScheduledTransactionsService {
+
+    private final AccountsService accountsService;
+    private final ScheduledTransactionsJournal journal;
+    private final long tickMillis;
+    private final int wheelSize;
+    private final int maxExecutionsPerTick;
+    private final int workerThreads;
+    private final long maxHorizonMillis;
+    private final int minPurgeSize;
+
+    private final Queue<ScheduledTransaction> inbox = new ConcurrentLinkedQueue<>();
+    private final Deque<ScheduledTransaction> ready = new ArrayDeque<>();
+    private final Map<String, ScheduledTransaction> pending = new ConcurrentHashMap<>();
+    private final AtomicLong readyCount = new AtomicLong();
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder lagSum = new LongAdder();
+    private final AtomicLong lastLag = new AtomicLong();
+    private final AtomicLong maxLag = new AtomicLong();
+
+    private HierarchicalTimingWheel<ScheduledTransaction> timingWheel;
+    private ScheduledExecutorService ticker;
+    private ExecutorService workers;
+
+    @Autowired
+    public ScheduledTransactionsService(AccountsService accountsService,
+                                        ScheduledTransactionsJournal journal,
+                                        @Value("${scheduler.tick-millis:100}") long tickMillis,
+                                        @Value("${scheduler.wheel-size:512}") int wheelSize,
+                                        @Value("${scheduler.max-executions-per-tick:1000}") int maxExecutionsPerTick,
+                                        @Value("${scheduler.worker-threads:4}") int workerThreads,
+                                        @Value("${scheduler.max-horizon-millis:315360000000}") long maxHorizonMillis) {
+        this.accountsService = accountsService;
+        this.journal = journal;
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+        this.maxExecutionsPerTick = maxExecutionsPerTick;
+        this.workerThreads = workerThreads;
+        this.maxHorizonMillis = maxHorizonMillis;
+        this.minPurgeSize = wheelSize * 2;
+    }
+
+    @PostConstruct
+    public void start() {
+        this.timingWheel = new HierarchicalTimingWheel<>(this.tickMillis, this.wheelSize, System.currentTimeMillis());
+        for (ScheduledTransaction scheduledTransaction : this.journal.load()) {
+            this.pending.put(scheduledTransaction.getScheduledTransactionId(), scheduledTransaction);
+            this.inbox.add(scheduledTransaction);
+        }
+        this.workers = Executors.newFixedThreadPool(this.workerThreads);
+        this.ticker = Executors.newSingleThreadScheduledExecutor();
+        this.ticker.scheduleAtFixedRate(this::tick, this.tickMillis, this.tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        this.ticker.shutdown();
+        this.ticker.awaitTermination(1, TimeUnit.SECONDS);
+        this.workers.shutdown();
+        this.workers.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    public ScheduledTransaction schedule(ScheduledTransaction scheduledTransaction) {
+        Transaction transaction = scheduledTransaction.getTransaction();
+        if (transaction.getAccountFromId().equals(transaction.getAccountToId())) {
+            throw new IncorrectAccountIdException("Cannot transfer from account to itself.");
+        }
+        long horizon = System.currentTimeMillis() + this.maxHorizonMillis;
+        if (scheduledTransaction.getExecuteAt() > horizon
+                || scheduledTransaction.getRepeatIntervalMillis() > this.maxHorizonMillis) {
+            throw new IncorrectScheduleException(
+                    "Transactions can be scheduled at most " + this.maxHorizonMillis + " ms ahead.");
+        }
+        if (scheduledTransaction.isRecurring() && scheduledTransaction.getRepeatIntervalMillis() < this.tickMillis) {
+            throw new IncorrectScheduleException(
+                    "Repeat interval must be at least " + this.tickMillis + " ms.");
+        }
+        scheduledTransaction.setScheduledTransactionId(UUID.randomUUID().toString());
+        long position = this.journal.append(scheduledTransaction);
+        this.pending.put(scheduledTransaction.getScheduledTransactionId(), scheduledTransaction);
+        this.journal.sync(position);
+        this.inbox.add(scheduledTransaction);
+        return scheduledTransaction;
+    }
+
+    /**
+     * Cancels a pending transaction, a cancelled entry is dropped when its deadline is reached or by the next purge.
+     *
+     * @return false if there is no such pending transaction.
+     */
+    public boolean cancel(String scheduledTransactionId) {
+        if (this.pending.remove(scheduledTransactionId) == null) {
+            return false;
+        }
+        this.journal.sync(this.journal.remove(scheduledTransactionId));
+        return true;
+    }
+
+    public SchedulerMetrics getMetrics() {
+        long executedCount = this.executed.sum();
+        long failedCount = this.failed.sum();
+        long runs = executedCount + failedCount;
+        return new SchedulerMetrics(this.pending.size(), this.readyCount.get(), executedCount, failedCount,
+                this.lastLag.get(), this.maxLag.get(), runs == 0 ? 0 : this.lagSum.sum() / runs);
+    }
+
+    private void tick() {
+        try {
+            long now = System.currentTimeMillis();
+            ScheduledTransaction scheduledTransaction;
+            while ((scheduledTransaction = this.inbox.poll()) != null) {
+                if (!this.timingWheel.add(scheduledTransaction.getExecuteAt(), scheduledTransaction)) {
+                    this.ready.add(scheduledTransaction);
+                }
+            }
+            // Live entries in the wheel are a subset of the pending ones, so more than half of the wheel is cancelled.
+            if (this.timingWheel.size() > this.minPurgeSize && this.timingWheel.size() > 2 * this.pending.size()) {
+                this.timingWheel.removeIf(entry -> this.pending.get(entry.getScheduledTransactionId()) != entry);
+            }
+            List<ScheduledTransaction> expired = new ArrayList<>();
+            this.timingWheel.advanceClock(now, expired);
+            this.ready.addAll(expired);
+
+            for (int i = 0; i < this.maxExecutionsPerTick && !this.ready.isEmpty(); i++) {
+                ScheduledTransaction due = this.ready.poll();
+                this.workers.execute(() -> execute(due));
+            }
+            this.readyCount.set(this.ready.size());
+        } catch (RuntimeException e) {
+            // An exception would cancel all further ticks of the scheduled executor.
+            log.error("Scheduler tick failed", e);
+        }
+    }
+
+    private void execute(ScheduledTransaction scheduledTransaction) {
+        String scheduledTransactionId = scheduledTransaction.getScheduledTransactionId();
+        Transaction transaction = scheduledTransaction.getTransaction();
+        if (scheduledTransaction.isRecurring()) {
+            long repeatIntervalMillis = scheduledTransaction.getRepeatIntervalMillis();
+            long nextExecuteAt = scheduledTransaction.getExecuteAt() + repeatIntervalMillis;
+            long now = System.currentTimeMillis();
+            if (nextExecuteAt < now) {
+                nextExecuteAt += (now - nextExecuteAt + repeatIntervalMillis - 1) / repeatIntervalMillis
+                        * repeatIntervalMillis;
+            }
+            ScheduledTransaction next = new ScheduledTransaction(transaction, nextExecuteAt, repeatIntervalMillis);
+            next.setScheduledTransactionId(scheduledTransactionId);
+            long[] position = new long[1];
+            // Journaled under the entry's bin lock, so a concurrent cancel is either seen here or journaled after.
+            ScheduledTransaction current = this.pending.computeIfPresent(scheduledTransactionId,
+                    (id, pendingTransaction) -> {
+                        if (pendingTransaction != scheduledTransaction) {
+                            return pendingTransaction;
+                        }
+                        position[0] = this.journal.append(next);
+                        return next;
+                    });
+            if (current != next) {
+                return;
+            }
+            this.journal.sync(position[0]);
+            this.inbox.add(next);
+        } else if (this.pending.remove(scheduledTransactionId, scheduledTransaction)) {
+            this.journal.sync(this.journal.remove(scheduledTransactionId));
+        } else {
+            // Cancelled.
+            return;
+        }
+
+        long lag = Math.max(0, System.currentTimeMillis() - scheduledTransaction.getExecuteAt());
+        this.lagSum.add(lag);
+        this.lastLag.set(lag);
+        this.maxLag.accumulateAndGet(lag, Math::max);
+
+        try {
+            this.accountsService.createTransaction(transaction);
+            this.executed.increment();
+        } catch (RuntimeException e) {
+            this.failed.increment();
+            log.warn("Scheduled transaction {} failed: {}", scheduledTransactionId, e.getMessage());
+        }
+    }
+}
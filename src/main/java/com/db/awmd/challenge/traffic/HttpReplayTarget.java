@@ -0,0 +1,75 @@
+package com.db.awmd.challenge.traffic;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Transaction;
+import com.db.awmd.challenge.web.AccountsJsonHttpMessageConverter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Replays over HTTP against a running service, e.g. {@code http://localhost:18080}.
+ */
+public class HttpReplayTarget implements ReplayTarget {
+
+    private final String baseUrl;
+
+    public HttpReplayTarget(String baseUrl) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+    }
+
+    @Override
+    public boolean execute(TrafficRecord record) throws IOException {
+        HttpURLConnection connection;
+        switch (record.getType()) {
+            case CREATE_ACCOUNT:
+                connection = open("/v1/accounts", "POST");
+                try (OutputStream body = connection.getOutputStream()) {
+                    AccountsJsonHttpMessageConverter.writeAccount(
+                            new Account(record.getAccountId(), record.getAmount()), body);
+                }
+                break;
+            case GET_ACCOUNT:
+                connection = open("/v1/accounts/" + encode(record.getAccountId()), "GET");
+                break;
+            default:
+                connection = open("/v1/accounts/" + encode(record.getAccountId()) + "/transactions", "POST");
+                try (OutputStream body = connection.getOutputStream()) {
+                    AccountsJsonHttpMessageConverter.writeTransaction(
+                            new Transaction(record.getAccountId(), record.getAccountToId(), record.getAmount()), body);
+                }
+                break;
+        }
+
+        int status = connection.getResponseCode();
+        // Read the response fully so that the keep-alive connection is reused.
+        try (InputStream response = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            if (response != null) {
+                byte[] buffer = new byte[4096];
+                while (response.read(buffer) >= 0) {
+                    // Discard.
+                }
+            }
+        }
+        return status < 400;
+    }
+
+    private HttpURLConnection open(String path, String method) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(this.baseUrl + path).openConnection();
+        connection.setRequestMethod(method);
+        if ("POST".equals(method)) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+        }
+        return connection;
+    }
+
+    private static String encode(String accountId) throws IOException {
+        return URLEncoder.encode(accountId, StandardCharsets.UTF_8.name()).replace("+", "%20");
+    }
+}
@@ -0,0 +1,39 @@
+package com.db.awmd.challenge.traffic;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Transaction;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.exception.IncorrectAccountIdException;
+import com.db.awmd.challenge.exception.InsufficientBalanceException;
+import com.db.awmd.challenge.service.AccountsService;
+
+/**
+ * Replays straight against {@link AccountsService}, measuring the service without the HTTP stack.
+ */
+public class InProcessReplayTarget implements ReplayTarget {
+
+    private final AccountsService accountsService;
+
+    public InProcessReplayTarget(AccountsService accountsService) {
+        this.accountsService = accountsService;
+    }
+
+    @Override
+    public boolean execute(TrafficRecord record) {
+        try {
+            switch (record.getType()) {
+                case CREATE_ACCOUNT:
+                    this.accountsService.createAccount(new Account(record.getAccountId(), record.getAmount()));
+                    return true;
+                case GET_ACCOUNT:
+                    return this.accountsService.getAccount(record.getAccountId()) != null;
+                default:
+                    this.accountsService.createTransaction(
+                            new Transaction(record.getAccountId(), record.getAccountToId(), record.getAmount()));
+                    return true;
+            }
+        } catch (DuplicateAccountIdException | IncorrectAccountIdException | InsufficientBalanceException e) {
+            return false;
+        }
+    }
+}
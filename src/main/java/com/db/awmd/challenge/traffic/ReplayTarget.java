@@ -0,0 +1,10 @@
+package com.db.awmd.challenge.traffic;
+
+public interface ReplayTarget {
+
+  /**
+   * @return false if the service rejected the request, e.g. for an insufficient balance.
+   * @throws Exception if the request could not be executed at all.
+   */
+  boolean execute(TrafficRecord record) throws Exception;
+}
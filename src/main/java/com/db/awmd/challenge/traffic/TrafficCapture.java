@@ -0,0 +1,117 @@
+package com.db.awmd.challenge.traffic;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Opt-in capture of the incoming account requests into a {@link TrafficLogWriter} log, enabled by setting
+ * {@code capture.file}. Request threads only offer a record to a bounded queue drained by a writer thread; when the
+ * writer falls behind records are dropped and counted rather than slowing the requests down, and so are records
+ * that cannot be encoded; only a failure of the log file itself stops the capture.
+ */
+@Slf4j
+@Component
+public class TrafficCapture {
+
+    private final String file;
+    private final BlockingQueue<TrafficRecord> queue;
+    private final LongAdder dropped = new LongAdder();
+    private final long startNanos = System.nanoTime();
+    private volatile boolean running;
+    private TrafficLogWriter writer;
+    private Thread writerThread;
+
+    @Autowired
+    public TrafficCapture(@Value("${capture.file:}") String file,
+                          @Value("${capture.queue-size:65536}") int queueSize) {
+        this.file = file;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (this.file.isEmpty()) {
+            return;
+        }
+        this.writer = new TrafficLogWriter(new FileOutputStream(this.file));
+        this.running = true;
+        this.writerThread = new Thread(this::writeRecords, "traffic-capture");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+        log.info("Capturing traffic into {}", this.file);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+        if (this.writerThread == null) {
+            return;
+        }
+        // The writer thread may have stopped on a failed write already, the writer is closed in any case.
+        this.running = false;
+        this.writerThread.join();
+        this.writerThread = null;
+        try {
+            TrafficRecord record;
+            while ((record = this.queue.poll()) != null) {
+                write(record);
+            }
+        } finally {
+            this.writer.close();
+        }
+        log.info("Traffic capture stopped, {} records dropped", this.dropped.sum());
+    }
+
+    public boolean isEnabled() {
+        return this.running;
+    }
+
+    public long getDropped() {
+        return this.dropped.sum();
+    }
+
+    public void record(TrafficRecord.Type type, String accountId, String accountToId, BigDecimal amount) {
+        if (this.running && !this.queue.offer(
+                new TrafficRecord(type, System.nanoTime() - this.startNanos, accountId, accountToId, amount))) {
+            this.dropped.increment();
+        }
+    }
+
+    private void writeRecords() {
+        try {
+            while (this.running) {
+                TrafficRecord record = this.queue.poll(100, TimeUnit.MILLISECONDS);
+                if (record != null) {
+                    write(record);
+                } else {
+                    this.writer.flush();
+                }
+            }
+        } catch (IOException e) {
+            log.error("Traffic capture failed", e);
+            this.running = false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write(TrafficRecord record) throws IOException {
+        try {
+            this.writer.write(record);
+        } catch (IllegalArgumentException e) {
+            log.warn("Dropping traffic record: {}", e.getMessage());
+            this.dropped.increment();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.db.awmd.challenge.traffic;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the log written by {@link TrafficLogWriter}.
+ */
+public class TrafficLogReader implements Closeable {
+
+    private static final TrafficRecord.Type[] TYPES = TrafficRecord.Type.values();
+
+    private final DataInputStream input;
+    private long lastOffsetNanos;
+
+    public TrafficLogReader(InputStream inputStream) throws IOException {
+        this.input = new DataInputStream(new BufferedInputStream(inputStream, 64 * 1024));
+        if (this.input.readInt() != TrafficLogWriter.MAGIC) {
+            throw new IOException("Not a traffic log.");
+        }
+        int version = this.input.readInt();
+        if (version != TrafficLogWriter.VERSION) {
+            throw new IOException("Unsupported traffic log version " + version);
+        }
+    }
+
+    /**
+     * @return the next record or null at the end of the log, including a record torn by a crash of the writer.
+     */
+    public TrafficRecord read() throws IOException {
+        int type = this.input.read();
+        if (type < 0) {
+            return null;
+        } else if (type >= TYPES.length) {
+            throw new IOException("Unknown traffic record type " + type);
+        }
+        try {
+            long offsetNanos = this.lastOffsetNanos + readVarLong();
+            String accountId = readString();
+            String accountToId = TYPES[type] == TrafficRecord.Type.CREATE_TRANSACTION ? readString() : null;
+            BigDecimal amount = null;
+            long unscaledLength = readVarLong();
+            if (unscaledLength != TrafficLogWriter.NO_AMOUNT) {
+                byte[] unscaled = new byte[(int) unscaledLength];
+                this.input.readFully(unscaled);
+                amount = new BigDecimal(new BigInteger(unscaled), (int) readVarLong());
+            }
+            this.lastOffsetNanos = offsetNanos;
+            return new TrafficRecord(TYPES[type], offsetNanos, accountId, accountToId, amount);
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.input.close();
+    }
+
+    private String readString() throws IOException {
+        long length = readVarLong();
+        if (length < 0 || length > TrafficLogWriter.MAX_STRING_BYTES) {
+            throw new IOException("Corrupted traffic record, string of " + length + " bytes");
+        }
+        byte[] bytes = new byte[(int) length];
+        this.input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private long readVarLong() throws IOException {
+        long zigZag = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = this.input.readUnsignedByte();
+            zigZag |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return (zigZag >>> 1) ^ -(zigZag & 1);
+    }
+}
@@ -0,0 +1,92 @@
+package com.db.awmd.challenge.traffic;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes the binary traffic log: a header followed by one record per request. A record is the type byte, the
+ * arrival offset as a delta to the previous record, the account ids as length and UTF-8 bytes and the amount as
+ * scale and unscaled bytes; numbers are variable-length encoded, so a transfer takes about as many bytes as its two
+ * account ids. A record is encoded completely before any of it is written, one that cannot be encoded leaves the
+ * log intact.
+ */
+public class TrafficLogWriter implements Closeable {
+
+    static final int MAGIC = 0x41574d44;
+    static final int VERSION = 2;
+    static final int NO_AMOUNT = -1;
+    static final int MAX_STRING_BYTES = 16 * 1024 * 1024;
+
+    private final DataOutputStream output;
+    private final ByteArrayOutputStream recordBuffer = new ByteArrayOutputStream(256);
+    private final DataOutputStream recordOutput = new DataOutputStream(this.recordBuffer);
+    private long lastOffsetNanos;
+
+    public TrafficLogWriter(OutputStream outputStream) throws IOException {
+        this.output = new DataOutputStream(new BufferedOutputStream(outputStream, 64 * 1024));
+        this.output.writeInt(MAGIC);
+        this.output.writeInt(VERSION);
+    }
+
+    /**
+     * @throws IllegalArgumentException if an account id is missing or longer than {@link #MAX_STRING_BYTES}, nothing
+     *                                  is written then.
+     */
+    public void write(TrafficRecord record) throws IOException {
+        this.recordBuffer.reset();
+        this.recordOutput.writeByte(record.getType().ordinal());
+        writeVarLong(record.getOffsetNanos() - this.lastOffsetNanos);
+        writeString(record.getAccountId());
+        if (record.getType() == TrafficRecord.Type.CREATE_TRANSACTION) {
+            writeString(record.getAccountToId());
+        }
+        BigDecimal amount = record.getAmount();
+        if (amount == null) {
+            writeVarLong(NO_AMOUNT);
+        } else {
+            byte[] unscaled = amount.unscaledValue().toByteArray();
+            writeVarLong(unscaled.length);
+            this.recordOutput.write(unscaled);
+            writeVarLong(amount.scale());
+        }
+        this.recordBuffer.writeTo(this.output);
+        this.lastOffsetNanos = record.getOffsetNanos();
+    }
+
+    public void flush() throws IOException {
+        this.output.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.output.close();
+    }
+
+    private void writeString(String value) throws IOException {
+        if (value == null) {
+            throw new IllegalArgumentException("Account id is missing.");
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_BYTES) {
+            throw new IllegalArgumentException("Account id is longer than " + MAX_STRING_BYTES + " bytes.");
+        }
+        writeVarLong(bytes.length);
+        this.recordOutput.write(bytes);
+    }
+
+    private void writeVarLong(long value) throws IOException {
+        // Zig-zag, so that small negative numbers stay short as well.
+        long zigZag = (value << 1) ^ (value >> 63);
+        while ((zigZag & ~0x7FL) != 0) {
+            this.recordOutput.writeByte((int) ((zigZag & 0x7F) | 0x80));
+            zigZag >>>= 7;
+        }
+        this.recordOutput.writeByte((int) zigZag);
+    }
+}
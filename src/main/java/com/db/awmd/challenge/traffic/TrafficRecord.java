@@ -0,0 +1,35 @@
+package com.db.awmd.challenge.traffic;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+@Data
+public class TrafficRecord {
+
+    public enum Type {
+        CREATE_ACCOUNT, GET_ACCOUNT, CREATE_TRANSACTION
+    }
+
+    private final Type type;
+
+    /**
+     * Arrival time of the request in nanos since the capture was started.
+     */
+    private final long offsetNanos;
+
+    /**
+     * The account created or read, or the account money is transferred from.
+     */
+    private final String accountId;
+
+    /**
+     * The account money is transferred to, null for other types.
+     */
+    private final String accountToId;
+
+    /**
+     * The initial balance or the transferred amount, null for reads.
+     */
+    private final BigDecimal amount;
+}
@@ -0,0 +1,213 @@
+package com.db.awmd.challenge.traffic;
+
+import com.db.awmd.challenge.DevChallengeApplication;
+import com.db.awmd.challenge.service.AccountsService;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Deterministic open-loop replay of a captured traffic log. Every request is due at its captured offset divided by
+ * the rate factor and its latency is measured from that due time, not from when a worker got to send it, so a
+ * stalled service is charged for the requests queued behind the stall (coordinated omission correction). With
+ * {@code --rate=max} requests have no due time, they are sent as fast as the workers take them and the report shows
+ * the service time of each request instead. A request starts once every earlier request on one of its accounts
+ * has completed, so requests sharing an account are replayed in their captured order and the outcome of a replay,
+ * rejections included, does not depend on the thread timing; requests on disjoint accounts run concurrently. At most
+ * {@code --queue-size} requests per worker are in flight, the log is read no faster than that.
+ * <p>
+ * Usage: {@code gradle replay -PreplayArgs="--log=traffic.log --target=http://localhost:18080 --rate=2"}, where the
+ * target is {@code in-process} (default) or a base URL and the rate is {@code original} (default), {@code max} or a
+ * factor; {@code --threads} sets the number of concurrent requests (default 16) and {@code --queue-size} the
+ * requests queued per worker (default 1024).
+ */
+public class TrafficReplay {
+
+    private final ReplayTarget target;
+    private final double rate;
+    private final int threads;
+    private final int queueSize;
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private long elapsedNanos;
+
+    /**
+     * @param rate replay speed relative to the capture, {@link Double#POSITIVE_INFINITY} for as fast as possible.
+     */
+    public TrafficReplay(ReplayTarget target, double rate, int threads) {
+        this(target, rate, threads, 1024);
+    }
+
+    public TrafficReplay(ReplayTarget target, double rate, int threads, int queueSize) {
+        if (!(rate > 0)) {
+            throw new IllegalArgumentException("Rate must be positive.");
+        }
+        this.target = target;
+        this.rate = rate;
+        this.threads = threads;
+        this.queueSize = queueSize;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String log = null;
+        String target = "in-process";
+        String rate = "original";
+        int threads = 16;
+        int queueSize = 1024;
+        for (String arg : args) {
+            if (arg.startsWith("--log=")) {
+                log = arg.substring("--log=".length());
+            } else if (arg.startsWith("--target=")) {
+                target = arg.substring("--target=".length());
+            } else if (arg.startsWith("--rate=")) {
+                rate = arg.substring("--rate=".length());
+            } else if (arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(arg.substring("--threads=".length()));
+            } else if (arg.startsWith("--queue-size=")) {
+                queueSize = Integer.parseInt(arg.substring("--queue-size=".length()));
+            } else {
+                throw new IllegalArgumentException("Unknown argument " + arg);
+            }
+        }
+        if (log == null) {
+            throw new IllegalArgumentException("--log is required.");
+        }
+        double rateFactor = "original".equals(rate) ? 1
+                : "max".equals(rate) ? Double.POSITIVE_INFINITY : Double.parseDouble(rate);
+
+        ConfigurableApplicationContext context = null;
+        ReplayTarget replayTarget;
+        if ("in-process".equals(target)) {
+            context = new SpringApplicationBuilder(DevChallengeApplication.class).web(false).run();
+            replayTarget = new InProcessReplayTarget(context.getBean(AccountsService.class));
+        } else {
+            replayTarget = new HttpReplayTarget(target);
+        }
+        try (InputStream inputStream = new FileInputStream(log)) {
+            TrafficReplay replay = new TrafficReplay(replayTarget, rateFactor, threads, queueSize);
+            replay.replay(new TrafficLogReader(inputStream));
+            replay.printReport(System.out);
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+        }
+    }
+
+    public void replay(TrafficLogReader reader) throws IOException, InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(this.threads);
+        int maxInFlight = this.threads * this.queueSize;
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        // The last request scheduled on every account, a request waits for those of both its accounts.
+        Map<String, CompletableFuture<?>> lastRequests = new ConcurrentHashMap<>();
+        long startNanos = System.nanoTime();
+        try {
+            TrafficRecord record;
+            while ((record = reader.read()) != null) {
+                long dueNanos = isMaxRate() ? System.nanoTime()
+                        : startNanos + (long) (record.getOffsetNanos() / this.rate);
+                long waitNanos;
+                while ((waitNanos = dueNanos - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(waitNanos);
+                }
+                inFlight.acquire();
+                schedule(record, dueNanos, workers, inFlight, lastRequests);
+            }
+            inFlight.acquire(maxInFlight);
+        } finally {
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            this.elapsedNanos = System.nanoTime() - startNanos;
+        }
+    }
+
+    public long getElapsedNanos() {
+        return this.elapsedNanos;
+    }
+
+    public LatencyHistogram getLatencies() {
+        return this.latencies;
+    }
+
+    public long getRejected() {
+        return this.rejected.sum();
+    }
+
+    public long getFailed() {
+        return this.failed.sum();
+    }
+
+    public void printReport(PrintStream out) {
+        long count = this.latencies.getCount();
+        out.printf("requests: %d, rejected: %d, failed: %d, elapsed: %.3f s, throughput: %.1f req/s%n",
+                count, getRejected(), getFailed(), this.elapsedNanos / 1e9, count / (this.elapsedNanos / 1e9));
+        out.printf(isMaxRate() ? "service time (us): p50=%d p90=%d p99=%d p99.9=%d max=%d%n"
+                        : "latency (us, corrected for coordinated omission): p50=%d p90=%d p99=%d p99.9=%d max=%d%n",
+                this.latencies.getPercentileMicros(50), this.latencies.getPercentileMicros(90),
+                this.latencies.getPercentileMicros(99), this.latencies.getPercentileMicros(99.9),
+                this.latencies.getPercentileMicros(100));
+    }
+
+    private boolean isMaxRate() {
+        return Double.isInfinite(this.rate);
+    }
+
+    private void schedule(TrafficRecord record, long dueNanos, ExecutorService workers, Semaphore inFlight,
+                          Map<String, CompletableFuture<?>> lastRequests) {
+        String accountId = record.getAccountId();
+        String accountToId = record.getAccountToId();
+        CompletableFuture<?> previous = lastRequests.get(accountId);
+        CompletableFuture<?> previousTo = accountToId == null ? null : lastRequests.get(accountToId);
+        CompletableFuture<?> after = previous == null ? previousTo
+                : previousTo == null ? previous : CompletableFuture.allOf(previous, previousTo);
+        if (after == null) {
+            after = CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<?> request = after.handleAsync((result, e) -> {
+            try {
+                execute(record, dueNanos);
+            } finally {
+                inFlight.release();
+            }
+            return null;
+        }, workers);
+        lastRequests.put(accountId, request);
+        if (accountToId != null) {
+            lastRequests.put(accountToId, request);
+        }
+        // Registered after the puts, so a request completed meanwhile is removed as well.
+        request.whenComplete((result, e) -> {
+            lastRequests.remove(accountId, request);
+            if (accountToId != null) {
+                lastRequests.remove(accountToId, request);
+            }
+        });
+    }
+
+    private void execute(TrafficRecord record, long dueNanos) {
+        // Without a schedule the due time is only the time of queueing, it would measure the queue, not the service.
+        long startNanos = isMaxRate() ? System.nanoTime() : dueNanos;
+        try {
+            if (!this.target.execute(record)) {
+                this.rejected.increment();
+            }
+        } catch (Exception e) {
+            this.failed.increment();
+        }
+        this.latencies.recordNanos(System.nanoTime() - startNanos);
+    }
+}
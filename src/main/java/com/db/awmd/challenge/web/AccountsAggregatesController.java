@@ -0,0 +1,43 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.BalanceAggregates;
+import com.db.awmd.challenge.repository.AccountsAggregates;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/v1/aggregates")
+public class AccountsAggregatesController {
+
+    private static final int MAX_TOP_ACCOUNTS = 1000;
+
+    private final AccountsAggregates accountsAggregates;
+
+    @Autowired
+    public AccountsAggregatesController(AccountsAggregates accountsAggregates) {
+        this.accountsAggregates = accountsAggregates;
+    }
+
+    @GetMapping
+    public BalanceAggregates getAggregates() {
+        return this.accountsAggregates.getAggregates();
+    }
+
+    @GetMapping(path = "/top")
+    public ResponseEntity<Object> getTopAccounts(@RequestParam(defaultValue = "10") int limit) {
+        if (limit < 1 || limit > MAX_TOP_ACCOUNTS) {
+            return new ResponseEntity<>("Limit must be between 1 and " + MAX_TOP_ACCOUNTS + ".",
+                    HttpStatus.BAD_REQUEST);
+        } else if (!this.accountsAggregates.isRankingEnabled()) {
+            return new ResponseEntity<>("Top accounts are not tracked by the configured accounts repository.",
+                    HttpStatus.NOT_FOUND);
+        }
+        List<Account> topAccounts = this.accountsAggregates.getTopAccounts(limit);
+        return new ResponseEntity<>(topAccounts, HttpStatus.OK);
+    }
+}
@@ -0,0 +1,25 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.domain.AccountsCacheMetrics;
+import com.db.awmd.challenge.repository.AccountsRepositoryTiered;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/v1/accounts-cache")
+@ConditionalOnProperty(name = "accounts.repository", havingValue = "tiered")
+public class AccountsCacheController {
+
+    private final AccountsRepositoryTiered accountsRepositoryTiered;
+
+    @Autowired
+    public AccountsCacheController(AccountsRepositoryTiered accountsRepositoryTiered) {
+        this.accountsRepositoryTiered = accountsRepositoryTiered;
+    }
+
+    @GetMapping(path = "/metrics")
+    public AccountsCacheMetrics getMetrics() {
+        return this.accountsRepositoryTiered.getMetrics();
+    }
+}
@@ -6,6 +6,8 @@ import com.db.awmd.challenge.exception.DuplicateAccountIdException;
 import com.db.awmd.challenge.exception.IncorrectAccountIdException;
 import com.db.awmd.challenge.exception.InsufficientBalanceException;
 import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.traffic.TrafficCapture;
+import com.db.awmd.challenge.traffic.TrafficRecord;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
@@ -13,23 +15,26 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import javax.validation.Valid;
-
 @RestController
 @RequestMapping("/v1/accounts")
 @Slf4j
 public class AccountsController {
 
     private final AccountsService accountsService;
+    private final TrafficCapture trafficCapture;
 
     @Autowired
-    public AccountsController(AccountsService accountsService) {
+    public AccountsController(AccountsService accountsService, TrafficCapture trafficCapture) {
         this.accountsService = accountsService;
+        this.trafficCapture = trafficCapture;
     }
 
+    // Account and Transaction bodies are validated by AccountsJsonHttpMessageConverter while they are parsed.
     @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<Object> createAccount(@RequestBody @Valid Account account) {
+    public ResponseEntity<Object> createAccount(@RequestBody Account account) {
         log.info("Creating account {}", account);
+        this.trafficCapture.record(TrafficRecord.Type.CREATE_ACCOUNT, account.getAccountId(), null,
+                account.getBalance());
 
         try {
             this.accountsService.createAccount(account);
@@ -43,13 +48,16 @@ public class AccountsController {
     @GetMapping(path = "/{accountId}")
     public Account getAccount(@PathVariable String accountId) {
         log.info("Retrieving account for id {}", accountId);
+        this.trafficCapture.record(TrafficRecord.Type.GET_ACCOUNT, accountId, null, null);
         return this.accountsService.getAccount(accountId);
     }
 
     @PostMapping(path = "/{accountId}/transactions", consumes = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<Object> createTransaction(@PathVariable String accountId,
-                                                    @RequestBody @Valid Transaction transaction) {
+                                                    @RequestBody Transaction transaction) {
         log.info("Processing transaction {}", transaction);
+        this.trafficCapture.record(TrafficRecord.Type.CREATE_TRANSACTION, transaction.getAccountFromId(),
+                transaction.getAccountToId(), transaction.getAmount());
 
         if (!accountId.equals(transaction.getAccountFromId())) {
             return new ResponseEntity<>("Not mismatch variable accountId in the URI and accountFromId from the body.",
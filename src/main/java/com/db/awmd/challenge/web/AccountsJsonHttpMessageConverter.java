@@ -0,0 +1,283 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.MultiLegTransaction;
+import com.db.awmd.challenge.domain.Transaction;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JSON converter for {@link Account}, {@link Transaction} and {@link MultiLegTransaction} on the hot REST path. It
+ * streams tokens straight into the fields and validates them by hand instead of going through reflective data
+ * binding and bean validation; numbers are parsed by Jackson from its own character buffer and the parser and
+ * generator buffers are recycled per thread by the {@link JsonFactory}. Spring Boot registers it ahead of the
+ * default Jackson converter, which still handles every other type.
+ */
+@Component
+public class AccountsJsonHttpMessageConverter extends AbstractHttpMessageConverter<Object> {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory()
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+            .disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+
+    /**
+     * Every account of a multi-leg transaction is locked for its duration, so the number of legs is capped.
+     */
+    public static final int MAX_LEGS = 100;
+
+    public AccountsJsonHttpMessageConverter() {
+        super(MediaType.APPLICATION_JSON_UTF8, MediaType.APPLICATION_JSON);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return clazz == Account.class || clazz == Transaction.class || clazz == MultiLegTransaction.class;
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        if (clazz == Account.class) {
+            return readAccount(inputMessage.getBody());
+        } else if (clazz == Transaction.class) {
+            return readTransaction(inputMessage.getBody());
+        }
+        return readMultiLegTransaction(inputMessage.getBody());
+    }
+
+    @Override
+    protected void writeInternal(Object object, HttpOutputMessage outputMessage) throws IOException {
+        if (object instanceof Account) {
+            writeAccount((Account) object, outputMessage.getBody());
+        } else if (object instanceof MultiLegTransaction) {
+            writeMultiLegTransaction((MultiLegTransaction) object, outputMessage.getBody());
+        } else {
+            writeTransaction((Transaction) object, outputMessage.getBody());
+        }
+    }
+
+    public static Account readAccount(InputStream inputStream) throws IOException {
+        String accountId = null;
+        BigDecimal balance = null;
+        try (JsonParser parser = JSON_FACTORY.createParser(inputStream)) {
+            expectStartObject(parser);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                parser.nextToken();
+                if ("accountId".equals(fieldName)) {
+                    accountId = readString(parser);
+                } else if ("balance".equals(fieldName)) {
+                    balance = readDecimal(parser);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            expectEndObject(parser);
+        } catch (JsonProcessingException e) {
+            throw new HttpMessageNotReadableException("JSON parse error: " + e.getOriginalMessage(), e);
+        }
+
+        validateId("accountId", accountId);
+        validateAmount("balance", balance, "Initial balance must be positive.");
+        return new Account(accountId, balance);
+    }
+
+    public static Transaction readTransaction(InputStream inputStream) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(inputStream)) {
+            parser.nextToken();
+            return readTransaction(parser);
+        } catch (JsonProcessingException e) {
+            throw new HttpMessageNotReadableException("JSON parse error: " + e.getOriginalMessage(), e);
+        }
+    }
+
+    public static MultiLegTransaction readMultiLegTransaction(InputStream inputStream) throws IOException {
+        List<Transaction> legs = null;
+        try (JsonParser parser = JSON_FACTORY.createParser(inputStream)) {
+            expectStartObject(parser);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                parser.nextToken();
+                if ("legs".equals(fieldName)) {
+                    if (parser.getCurrentToken() != JsonToken.START_ARRAY) {
+                        throw new HttpMessageNotReadableException("Field legs must be an array.");
+                    }
+                    legs = new ArrayList<>();
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        if (legs.size() == MAX_LEGS) {
+                            throw new HttpMessageNotReadableException("Field legs may have at most " + MAX_LEGS
+                                    + " elements.");
+                        }
+                        legs.add(readTransaction(parser));
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            expectEndObject(parser);
+        } catch (JsonProcessingException e) {
+            throw new HttpMessageNotReadableException("JSON parse error: " + e.getOriginalMessage(), e);
+        }
+
+        if (legs == null || legs.isEmpty()) {
+            throw new HttpMessageNotReadableException("Field legs may not be empty.");
+        }
+        return new MultiLegTransaction(legs);
+    }
+
+    public static void writeAccount(Account account, OutputStream outputStream) throws IOException {
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(outputStream, JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            writeStringField(generator, "accountId", account.getAccountId());
+            writeDecimalField(generator, "balance", account.getBalance());
+            generator.writeEndObject();
+        }
+    }
+
+    public static void writeTransaction(Transaction transaction, OutputStream outputStream) throws IOException {
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(outputStream, JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            writeTransactionFields(generator, transaction);
+            generator.writeEndObject();
+        }
+    }
+
+    public static void writeMultiLegTransaction(MultiLegTransaction multiLegTransaction, OutputStream outputStream)
+            throws IOException {
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(outputStream, JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("legs");
+            for (Transaction leg : multiLegTransaction.getLegs()) {
+                generator.writeStartObject();
+                writeTransactionFields(generator, leg);
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * Reads the object starting at the current token.
+     */
+    private static Transaction readTransaction(JsonParser parser) throws IOException {
+        String accountFromId = null;
+        String accountToId = null;
+        BigDecimal amount = null;
+        if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+            throw new HttpMessageNotReadableException("JSON object expected.");
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            parser.nextToken();
+            if ("accountFromId".equals(fieldName)) {
+                accountFromId = readString(parser);
+            } else if ("accountToId".equals(fieldName)) {
+                accountToId = readString(parser);
+            } else if ("amount".equals(fieldName)) {
+                amount = readDecimal(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        expectEndObject(parser);
+
+        validateId("accountFromId", accountFromId);
+        validateId("accountToId", accountToId);
+        validateAmount("amount", amount, "Transaction amount must be positive.");
+        return new Transaction(accountFromId, accountToId, amount);
+    }
+
+    private static void writeTransactionFields(JsonGenerator generator, Transaction transaction) throws IOException {
+        writeStringField(generator, "accountFromId", transaction.getAccountFromId());
+        writeStringField(generator, "accountToId", transaction.getAccountToId());
+        writeDecimalField(generator, "amount", transaction.getAmount());
+    }
+
+    private static void expectStartObject(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new HttpMessageNotReadableException("JSON object expected.");
+        }
+    }
+
+    private static void expectEndObject(JsonParser parser) throws IOException {
+        if (parser.getCurrentToken() != JsonToken.END_OBJECT) {
+            throw new HttpMessageNotReadableException("JSON object expected.");
+        }
+    }
+
+    private static String readString(JsonParser parser) throws IOException {
+        JsonToken token = parser.getCurrentToken();
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        } else if (token.isScalarValue()) {
+            return parser.getText();
+        }
+        throw new HttpMessageNotReadableException("Field " + parser.getCurrentName() + " must be a string.");
+    }
+
+    private static BigDecimal readDecimal(JsonParser parser) throws IOException {
+        JsonToken token = parser.getCurrentToken();
+        if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+            return parser.getDecimalValue();
+        } else if (token == JsonToken.VALUE_STRING) {
+            try {
+                return new BigDecimal(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+            } catch (NumberFormatException e) {
+                throw new HttpMessageNotReadableException("Field " + parser.getCurrentName() + " must be a number.");
+            }
+        } else if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        throw new HttpMessageNotReadableException("Field " + parser.getCurrentName() + " must be a number.");
+    }
+
+    private static void validateId(String fieldName, String value) {
+        if (value == null || value.isEmpty()) {
+            throw new HttpMessageNotReadableException("Field " + fieldName + " may not be empty.");
+        }
+    }
+
+    private static void validateAmount(String fieldName, BigDecimal value, String negativeMessage) {
+        if (value == null) {
+            throw new HttpMessageNotReadableException("Field " + fieldName + " may not be null.");
+        } else if (value.signum() < 0) {
+            throw new HttpMessageNotReadableException(negativeMessage);
+        }
+    }
+
+    private static void writeStringField(JsonGenerator generator, String fieldName, String value) throws IOException {
+        generator.writeFieldName(fieldName);
+        if (value == null) {
+            generator.writeNull();
+        } else {
+            generator.writeString(value);
+        }
+    }
+
+    private static void writeDecimalField(JsonGenerator generator, String fieldName, BigDecimal value)
+            throws IOException {
+        generator.writeFieldName(fieldName);
+        if (value == null) {
+            generator.writeNull();
+        } else {
+            generator.writeNumber(value);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.exception.IncorrectAccountIdException;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.BalanceUpdatesPublisher;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+@RestController
+@RequestMapping("/v1/balance-updates")
+@Slf4j
+public class BalanceUpdatesController {
+
+    private final AccountsService accountsService;
+    private final BalanceUpdatesPublisher balanceUpdatesPublisher;
+    private final long timeoutMillis;
+    private final int maxAccountsPerSubscription;
+
+    @Autowired
+    public BalanceUpdatesController(AccountsService accountsService,
+                                    BalanceUpdatesPublisher balanceUpdatesPublisher,
+                                    @Value("${balance-updates.timeout-millis:1800000}") long timeoutMillis,
+                                    @Value("${balance-updates.max-accounts-per-subscription:100}")
+                                            int maxAccountsPerSubscription) {
+        this.accountsService = accountsService;
+        this.balanceUpdatesPublisher = balanceUpdatesPublisher;
+        this.timeoutMillis = timeoutMillis;
+        this.maxAccountsPerSubscription = maxAccountsPerSubscription;
+    }
+
+    /**
+     * Streams a "balance" event with the account after every transfer touching one of the accounts. Only changes
+     * after the subscription are pushed, the current balances are read with {@code GET /v1/accounts/{accountId}}.
+     */
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribe(@RequestParam("accountId") List<String> accountIds, HttpServletRequest request) {
+        log.info("Subscribing to balance updates of {}", accountIds);
+
+        Set<String> uniqueAccountIds = new LinkedHashSet<>(accountIds);
+        if (uniqueAccountIds.isEmpty() || uniqueAccountIds.size() > this.maxAccountsPerSubscription) {
+            throw new IncorrectAccountIdException(
+                    "Between 1 and " + this.maxAccountsPerSubscription + " accounts can be subscribed to.");
+        }
+        for (String accountId : uniqueAccountIds) {
+            if (this.accountsService.getAccount(accountId) == null) {
+                throw new IncorrectAccountIdException("Account is not found by id " + accountId);
+            }
+        }
+
+        SseEmitter emitter = new SseEmitter(this.timeoutMillis);
+        BalanceUpdatesPublisher.Subscription subscription = this.balanceUpdatesPublisher.subscribe(uniqueAccountIds,
+                account -> emitter.send(SseEmitter.event().name("balance").data(account, MediaType.APPLICATION_JSON)));
+        // Completing the emitter would wait for the blocked write, closing the connection fails it.
+        Runnable closeConnection = TomcatConnectionCloser.get(request);
+        subscription.onStall(closeConnection != null ? closeConnection : emitter::complete);
+        emitter.onCompletion(subscription::cancel);
+        emitter.onTimeout(subscription::cancel);
+        return emitter;
+    }
+
+    @ExceptionHandler(IncorrectAccountIdException.class)
+    public ResponseEntity<Object> handleIncorrectAccountId(IncorrectAccountIdException e) {
+        return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+}
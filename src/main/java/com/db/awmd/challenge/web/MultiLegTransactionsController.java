@@ -0,0 +1,39 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.domain.MultiLegTransaction;
+import com.db.awmd.challenge.exception.IncorrectAccountIdException;
+import com.db.awmd.challenge.exception.InsufficientBalanceException;
+import com.db.awmd.challenge.service.AccountsService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/v1/multi-leg-transactions")
+@Slf4j
+public class MultiLegTransactionsController {
+
+    private final AccountsService accountsService;
+
+    @Autowired
+    public MultiLegTransactionsController(AccountsService accountsService) {
+        this.accountsService = accountsService;
+    }
+
+    // MultiLegTransaction bodies are validated by AccountsJsonHttpMessageConverter while they are parsed.
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> createMultiLegTransaction(@RequestBody MultiLegTransaction multiLegTransaction) {
+        log.info("Processing multi-leg transaction {}", multiLegTransaction);
+
+        try {
+            this.accountsService.createMultiLegTransaction(multiLegTransaction);
+        } catch (IncorrectAccountIdException | InsufficientBalanceException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+
+        return new ResponseEntity<>(HttpStatus.CREATED);
+    }
+}
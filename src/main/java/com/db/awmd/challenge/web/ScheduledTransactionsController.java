@@ -0,0 +1,56 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.domain.ScheduledTransaction;
+import com.db.awmd.challenge.domain.SchedulerMetrics;
+import com.db.awmd.challenge.exception.IncorrectAccountIdException;
+import com.db.awmd.challenge.exception.IncorrectScheduleException;
+import com.db.awmd.challenge.service.ScheduledTransactionsService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import javax.validation.Valid;
+
+@RestController
+@RequestMapping("/v1/scheduled-transactions")
+@Slf4j
+public class ScheduledTransactionsController {
+
+    private final ScheduledTransactionsService scheduledTransactionsService;
+
+    @Autowired
+    public ScheduledTransactionsController(ScheduledTransactionsService scheduledTransactionsService) {
+        this.scheduledTransactionsService = scheduledTransactionsService;
+    }
+
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> scheduleTransaction(@RequestBody @Valid ScheduledTransaction scheduledTransaction) {
+        log.info("Scheduling transaction {}", scheduledTransaction);
+
+        try {
+            this.scheduledTransactionsService.schedule(scheduledTransaction);
+        } catch (IncorrectAccountIdException | IncorrectScheduleException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+
+        return new ResponseEntity<>(scheduledTransaction, HttpStatus.CREATED);
+    }
+
+    @DeleteMapping(path = "/{scheduledTransactionId}")
+    public ResponseEntity<Object> cancelTransaction(@PathVariable String scheduledTransactionId) {
+        log.info("Cancelling scheduled transaction {}", scheduledTransactionId);
+        if (!this.scheduledTransactionsService.cancel(scheduledTransactionId)) {
+            return new ResponseEntity<>("Scheduled transaction " + scheduledTransactionId + " is not pending.",
+                    HttpStatus.NOT_FOUND);
+        }
+        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+    }
+
+    @GetMapping(path = "/metrics")
+    public SchedulerMetrics getMetrics() {
+        return this.scheduledTransactionsService.getMetrics();
+    }
+}
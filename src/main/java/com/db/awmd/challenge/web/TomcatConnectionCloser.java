@@ -0,0 +1,48 @@
+package com.db.awmd.challenge.web;
+
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.catalina.valves.ValveBase;
+import org.apache.coyote.ActionCode;
+import org.springframework.boot.context.embedded.ConfigurableEmbeddedServletContainer;
+import org.springframework.boot.context.embedded.EmbeddedServletContainerCustomizer;
+import org.springframework.boot.context.embedded.tomcat.TomcatEmbeddedServletContainerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+
+/**
+ * Lets a request close its connection from any thread. The servlet API has no such operation: completing an async
+ * request waits for a blocked write and then ends the response on a still open connection. On Tomcat a valve stores
+ * a {@link Runnable} in the request attribute {@link #ATTRIBUTE} that closes the connection immediately, which fails
+ * a write blocked on it; on other containers the attribute is absent.
+ */
+@Component
+public class TomcatConnectionCloser implements EmbeddedServletContainerCustomizer {
+
+    public static final String ATTRIBUTE = TomcatConnectionCloser.class.getName();
+
+    /**
+     * @return null if the container cannot close the connection of the request.
+     */
+    public static Runnable get(HttpServletRequest request) {
+        return (Runnable) request.getAttribute(ATTRIBUTE);
+    }
+
+    @Override
+    public void customize(ConfigurableEmbeddedServletContainer container) {
+        if (container instanceof TomcatEmbeddedServletContainerFactory) {
+            ((TomcatEmbeddedServletContainerFactory) container).addContextValves(new ValveBase(true) {
+                @Override
+                public void invoke(Request request, Response response) throws IOException, ServletException {
+                    // Only valid while the request is in progress, the coyote request is recycled afterwards.
+                    org.apache.coyote.Request coyoteRequest = request.getCoyoteRequest();
+                    request.setAttribute(ATTRIBUTE, (Runnable) () -> coyoteRequest.action(ActionCode.CLOSE_NOW, null));
+                    getNext().invoke(request, response);
+                }
+            });
+        }
+    }
+}
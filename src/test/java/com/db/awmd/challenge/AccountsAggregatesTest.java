@@ -0,0 +1,149 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.BalanceAggregates;
+import com.db.awmd.challenge.domain.BalanceBucket;
+import com.db.awmd.challenge.domain.Transaction;
+import com.db.awmd.challenge.exception.InsufficientBalanceException;
+import com.db.awmd.challenge.repository.AccountsAggregates;
+import com.db.awmd.challenge.service.AccountsService;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class AccountsAggregatesTest {
+
+    @Autowired
+    private AccountsService accountsService;
+    @Autowired
+    private AccountsAggregates accountsAggregates;
+
+    @Before
+    public void prepare() {
+        this.accountsService.getAccountsRepository().clearAccounts();
+    }
+
+    @Test
+    public void aggregatesFollowTransfers() throws Exception {
+        this.accountsService.createAccount(new Account("Id-1", new BigDecimal("50")));
+        this.accountsService.createAccount(new Account("Id-2", new BigDecimal("500")));
+        this.accountsService.createAccount(new Account("Id-3", new BigDecimal("5000")));
+
+        this.accountsService.createTransaction(new Transaction("Id-3", "Id-1", new BigDecimal("4950.5")));
+
+        BalanceAggregates aggregates = this.accountsAggregates.getAggregates();
+        assertThat(aggregates.getAccounts()).isEqualTo(3);
+        assertThat(aggregates.getTotal()).isEqualByComparingTo("5550");
+        BalanceBucket bucket = aggregates.getBuckets().get(0);
+        assertThat(bucket.getAccounts()).isEqualTo(1);
+        assertThat(bucket.getTotal()).isEqualByComparingTo("49.5");
+        bucket = aggregates.getBuckets().get(2);
+        assertThat(bucket.getAccounts()).isEqualTo(1);
+        assertThat(bucket.getTotal()).isEqualByComparingTo("5000.5");
+
+        List<Account> topAccounts = this.accountsAggregates.getTopAccounts(2);
+        assertThat(topAccounts).extracting(Account::getAccountId).containsExactly("Id-1", "Id-2");
+    }
+
+    @Test
+    public void totalIsConservedByConcurrentTransfers() throws Exception {
+        int accountNumber = 20;
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 0; i < accountNumber; i++) {
+            BigDecimal balance = new BigDecimal(10 * i + 5);
+            this.accountsService.createAccount(new Account("Id-" + i, balance));
+            total = total.add(balance);
+        }
+
+        List<Callable<Void>> callables = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            callables.add(() -> {
+                Random ran = new Random();
+                for (int i = 0; i < 2000; i++) {
+                    int fromId = ran.nextInt(accountNumber);
+                    int toId = (fromId + 1 + ran.nextInt(accountNumber - 1)) % accountNumber;
+                    try {
+                        this.accountsService.createTransaction(
+                                new Transaction("Id-" + fromId, "Id-" + toId, new BigDecimal(ran.nextInt(50))));
+                    } catch (InsufficientBalanceException e) {
+                        // Expected from time to time, the transfer is simply not applied.
+                    }
+                }
+                return null;
+            });
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        executor.invokeAll(callables);
+        executor.shutdown();
+
+        BalanceAggregates aggregates = this.accountsAggregates.getAggregates();
+        assertThat(aggregates.getTotal()).isEqualByComparingTo(total);
+        BigDecimal bucketsTotal = BigDecimal.ZERO;
+        long bucketsAccounts = 0;
+        for (BalanceBucket bucket : aggregates.getBuckets()) {
+            bucketsTotal = bucketsTotal.add(bucket.getTotal());
+            bucketsAccounts += bucket.getAccounts();
+        }
+        assertThat(bucketsTotal).isEqualByComparingTo(total);
+        assertThat(bucketsAccounts).isEqualTo(accountNumber);
+
+        List<Account> topAccounts = this.accountsAggregates.getTopAccounts(accountNumber);
+        assertThat(topAccounts).hasSize(accountNumber);
+        for (int i = 0; i < topAccounts.size(); i++) {
+            Account account = topAccounts.get(i);
+            assertThat(account.getBalance())
+                    .isEqualByComparingTo(this.accountsService.getAccount(account.getAccountId()).getBalance());
+            if (i > 0) {
+                assertThat(account.getBalance()).isLessThanOrEqualTo(topAccounts.get(i - 1).getBalance());
+            }
+        }
+    }
+
+    @Test
+    public void transfersToAccountsBeingCreatedLeaveOneRankingEntryPerAccount() throws Exception {
+        int accountNumber = 2000;
+        this.accountsService.createAccount(new Account("Id-source", new BigDecimal(accountNumber)));
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        List<Callable<Void>> callables = new ArrayList<>();
+        callables.add(() -> {
+            for (int i = 0; i < accountNumber; i++) {
+                this.accountsService.createAccount(new Account("Id-" + i, new BigDecimal(10)));
+            }
+            return null;
+        });
+        callables.add(() -> {
+            for (int i = 0; i < accountNumber; i++) {
+                while (this.accountsService.getAccount("Id-" + i) == null) {
+                    Thread.yield();
+                }
+                this.accountsService.createTransaction(new Transaction("Id-source", "Id-" + i, BigDecimal.ONE));
+            }
+            return null;
+        });
+        executor.invokeAll(callables);
+        executor.shutdown();
+
+        List<Account> topAccounts = this.accountsAggregates.getTopAccounts(accountNumber * 2);
+        assertThat(topAccounts).hasSize(accountNumber + 1);
+        for (Account account : topAccounts) {
+            assertThat(account.getBalance()).isEqualByComparingTo(
+                    "Id-source".equals(account.getAccountId()) ? "0" : "11");
+        }
+    }
+}
@@ -92,6 +92,22 @@ public class AccountsControllerTest {
                 .content("{\"accountId\":\"\",\"balance\":1000}")).andExpect(status().isBadRequest());
     }
 
+    @Test
+    public void createAccountUnknownFieldsIgnored() throws Exception {
+        this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"accountId\":\"Id-123\",\"owner\":{\"name\":\"x\"},\"balance\":\"1000.50\"}"))
+                .andExpect(status().isCreated());
+
+        Account account = accountsService.getAccount("Id-123");
+        assertThat(account.getBalance()).isEqualByComparingTo("1000.50");
+    }
+
+    @Test
+    public void createAccountMalformedBalance() throws Exception {
+        this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"accountId\":\"Id-123\",\"balance\":\"a lot\"}")).andExpect(status().isBadRequest());
+    }
+
     @Test
     public void getAccount() throws Exception {
         String uniqueAccountId = "Id-" + System.currentTimeMillis();
@@ -0,0 +1,300 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountsCacheMetrics;
+import com.db.awmd.challenge.domain.MultiLegTransaction;
+import com.db.awmd.challenge.domain.Transaction;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.exception.InsufficientBalanceException;
+import com.db.awmd.challenge.repository.AccountsAggregates;
+import com.db.awmd.challenge.repository.AccountsFileStore;
+import com.db.awmd.challenge.repository.AccountsRepositoryTiered;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.BalanceUpdatesPublisher;
+import com.db.awmd.challenge.service.NotificationService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+public class AccountsRepositoryTieredTest {
+
+    private static final int HOT_SIZE = 8;
+
+    private File file;
+    private AccountsAggregates accountsAggregates;
+    private AccountsRepositoryTiered accountsRepository;
+    private BalanceUpdatesPublisher balanceUpdatesPublisher;
+    private AccountsService accountsService;
+
+    @Before
+    public void prepare() throws Exception {
+        this.file = File.createTempFile("accounts", ".db");
+        this.accountsAggregates = new AccountsAggregates(new String[]{"0"});
+        this.accountsRepository = new AccountsRepositoryTiered(this.accountsAggregates, this.file.getPath(), 1024,
+                HOT_SIZE);
+        this.balanceUpdatesPublisher = new BalanceUpdatesPublisher(1, 5000, 16);
+        this.accountsService = new AccountsService(this.accountsRepository, mock(NotificationService.class),
+                this.balanceUpdatesPublisher);
+    }
+
+    @After
+    public void cleanUp() throws Exception {
+        this.balanceUpdatesPublisher.stop();
+        this.accountsRepository.close();
+        this.file.delete();
+    }
+
+    @Test
+    public void coldAccountsAreFaultedInWithTheirLatestBalance() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            this.accountsService.createAccount(new Account("Id-" + i, new BigDecimal(100)));
+        }
+        for (int i = 0; i < 99; i++) {
+            this.accountsService.createTransaction(new Transaction("Id-" + i, "Id-" + (i + 1), new BigDecimal(i + 1)));
+        }
+
+        AccountsCacheMetrics metrics = this.accountsRepository.getMetrics();
+        assertThat(metrics.getHotAccounts()).isLessThanOrEqualTo(HOT_SIZE);
+        assertThat(metrics.getColdAccounts()).isEqualTo(100);
+        assertThat(metrics.getEvictions()).isGreaterThan(0);
+        assertThat(metrics.getWriteBacks()).isGreaterThan(0);
+
+        // Every account received i and sent i + 1, except for the ends of the chain.
+        assertThat(this.accountsService.getAccount("Id-0").getBalance()).isEqualByComparingTo("99");
+        for (int i = 1; i < 99; i++) {
+            assertThat(this.accountsService.getAccount("Id-" + i).getBalance()).isEqualByComparingTo("99");
+        }
+        assertThat(this.accountsService.getAccount("Id-99").getBalance()).isEqualByComparingTo("199");
+        assertThat(this.accountsService.getAccount("Id-unknown")).isNull();
+        assertThat(this.accountsRepository.getMetrics().getMisses()).isGreaterThan(0);
+    }
+
+    @Test
+    public void writeThroughRefreshesAccountFaultedInAgain() throws Exception {
+        this.accountsRepository.createAccount(new Account("Id-a", new BigDecimal(100)));
+        this.accountsRepository.createAccount(new Account("Id-b", new BigDecimal(0)));
+        Account held = this.accountsRepository.getAccount("Id-a");
+        Account accountTo = this.accountsRepository.getAccount("Id-b");
+        for (int i = 0; i < 10 * HOT_SIZE; i++) {
+            this.accountsRepository.createAccount(new Account("Id-" + i, BigDecimal.ZERO));
+            this.accountsRepository.getAccount("Id-" + i);
+        }
+        // Evicted while held, then faulted in again with the balance of the file.
+        Account reloaded = this.accountsRepository.getAccount("Id-a");
+        assertThat(reloaded).isNotSameAs(held);
+
+        this.accountsRepository.transactionalTransferMoney(held, accountTo, new BigDecimal(30));
+
+        assertThat(this.accountsRepository.getAccount("Id-a").getBalance()).isEqualByComparingTo("70");
+        assertThat(reloaded.getBalance()).isEqualByComparingTo("70");
+    }
+
+    @Test
+    public void duplicateOfColdAccountIsRejected() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            this.accountsService.createAccount(new Account("Id-" + i, new BigDecimal(100)));
+        }
+        try {
+            this.accountsService.createAccount(new Account("Id-0", new BigDecimal(1)));
+            fail("Should have failed when adding duplicate account");
+        } catch (DuplicateAccountIdException ex) {
+            assertThat(ex.getMessage()).isEqualTo("Account id Id-0 already exists!");
+        }
+    }
+
+    @Test
+    public void concurrentTransfersConserveMoney() throws Exception {
+        int accountNumber = 64;
+        for (int i = 0; i < accountNumber; i++) {
+            this.accountsService.createAccount(new Account("Id-" + i, new BigDecimal(1000)));
+        }
+
+        List<Callable<Void>> callables = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            callables.add(() -> {
+                Random ran = new Random();
+                for (int i = 0; i < 2000; i++) {
+                    int fromId = ran.nextInt(accountNumber);
+                    int toId = (fromId + 1 + ran.nextInt(accountNumber - 1)) % accountNumber;
+                    try {
+                        this.accountsService.createTransaction(
+                                new Transaction("Id-" + fromId, "Id-" + toId, new BigDecimal(ran.nextInt(100))));
+                    } catch (InsufficientBalanceException e) {
+                        // Expected from time to time, the transfer is simply not applied.
+                    }
+                }
+                return null;
+            });
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        executor.invokeAll(callables);
+        executor.shutdown();
+
+        BigDecimal sum = BigDecimal.ZERO;
+        for (int i = 0; i < accountNumber; i++) {
+            sum = sum.add(this.accountsService.getAccount("Id-" + i).getBalance());
+        }
+        assertThat(sum).isEqualByComparingTo(new BigDecimal(1000 * accountNumber));
+        assertThat(this.accountsAggregates.getTotal()).isEqualByComparingTo(sum);
+    }
+
+    @Test
+    public void zeroNetMultiLegTransfersAmongEvictionsConserveMoney() throws Exception {
+        int accountNumber = 4 * HOT_SIZE;
+        for (int i = 0; i < accountNumber; i++) {
+            this.accountsService.createAccount(new Account("Id-" + i, new BigDecimal(1000)));
+        }
+
+        List<Callable<Void>> callables = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            callables.add(() -> {
+                Random ran = new Random();
+                for (int i = 0; i < 2000; i++) {
+                    int fromId = ran.nextInt(accountNumber);
+                    int viaId = (fromId + 1 + ran.nextInt(accountNumber - 1)) % accountNumber;
+                    int toId = (viaId + 1 + ran.nextInt(accountNumber - 1)) % accountNumber;
+                    BigDecimal amount = new BigDecimal(ran.nextInt(100));
+                    try {
+                        if (toId == fromId) {
+                            this.accountsService.createTransaction(
+                                    new Transaction("Id-" + fromId, "Id-" + viaId, amount));
+                        } else {
+                            // The account in the middle nets to zero and is only looked up.
+                            this.accountsService.createMultiLegTransaction(new MultiLegTransaction(Arrays.asList(
+                                    new Transaction("Id-" + fromId, "Id-" + viaId, amount),
+                                    new Transaction("Id-" + viaId, "Id-" + toId, amount))));
+                        }
+                    } catch (InsufficientBalanceException e) {
+                        // Expected from time to time, the transfer is simply not applied.
+                    }
+                }
+                return null;
+            });
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        executor.invokeAll(callables);
+        executor.shutdown();
+
+        assertThat(this.accountsRepository.getMetrics().getEvictions()).isGreaterThan(0);
+        BigDecimal sum = BigDecimal.ZERO;
+        for (int i = 0; i < accountNumber; i++) {
+            sum = sum.add(this.accountsService.getAccount("Id-" + i).getBalance());
+        }
+        assertThat(sum).isEqualByComparingTo(new BigDecimal(1000 * accountNumber));
+        assertThat(this.accountsAggregates.getTotal()).isEqualByComparingTo(sum);
+    }
+
+    @Test
+    public void transfersBetweenAccountsSharingLockStripesDoNotDeadlock() throws Exception {
+        // More accounts than lock stripes, so pairs land on the same stripe and on stripes in the opposite id order.
+        int accountNumber = 10_000;
+        for (int i = 0; i < accountNumber; i++) {
+            this.accountsService.createAccount(new Account("Id-" + i, new BigDecimal(1000)));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(executor.submit(() -> {
+                Random ran = new Random();
+                for (int i = 0; i < 5000; i++) {
+                    int fromId = ran.nextInt(accountNumber);
+                    int toId = (fromId + 1 + ran.nextInt(accountNumber - 1)) % accountNumber;
+                    try {
+                        this.accountsService.createTransaction(
+                                new Transaction("Id-" + fromId, "Id-" + toId, new BigDecimal(ran.nextInt(100))));
+                    } catch (InsufficientBalanceException e) {
+                        // Expected from time to time, the transfer is simply not applied.
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        BigDecimal sum = BigDecimal.ZERO;
+        for (int i = 0; i < accountNumber; i++) {
+            sum = sum.add(this.accountsService.getAccount("Id-" + i).getBalance());
+        }
+        assertThat(sum).isEqualByComparingTo(new BigDecimal(1000 * accountNumber));
+    }
+
+    @Test
+    public void oppositeTransfersWithoutServiceLocksDoNotDeadlock() throws Exception {
+        this.accountsRepository.createAccount(new Account("Id-A", new BigDecimal(1_000_000)));
+        this.accountsRepository.createAccount(new Account("Id-B", new BigDecimal(1_000_000)));
+        Account accountA = this.accountsRepository.getAccount("Id-A");
+        Account accountB = this.accountsRepository.getAccount("Id-B");
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            boolean forward = t % 2 == 0;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    this.accountsRepository.transactionalTransferMoney(forward ? accountA : accountB,
+                            forward ? accountB : accountA, BigDecimal.ONE);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(20, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        assertThat(accountA.getBalance().add(accountB.getBalance())).isEqualByComparingTo("2000000");
+    }
+
+    @Test
+    public void fileStoreGrowsAndKeepsLongAccountIds() throws Exception {
+        File storeFile = File.createTempFile("accounts-store", ".db");
+        StringBuilder longAccountId = new StringBuilder("Id-");
+        for (int i = 0; i < 100; i++) {
+            longAccountId.append('x');
+        }
+        try (AccountsFileStore fileStore = new AccountsFileStore(storeFile.toPath(), 16)) {
+            for (int i = 0; i < 1000; i++) {
+                assertThat(fileStore.insert("Id-" + i, new BigDecimal(i))).isTrue();
+            }
+            assertThat(fileStore.insert(longAccountId.toString(), new BigDecimal("1.5"))).isTrue();
+            assertThat(fileStore.insert(longAccountId.toString(), new BigDecimal("2.5"))).isFalse();
+            assertThat(fileStore.insert("Id-7", BigDecimal.ONE)).isFalse();
+            fileStore.update("Id-7", new BigDecimal("70.25"));
+            fileStore.update(longAccountId.toString(), new BigDecimal("3.5"));
+
+            assertThat(fileStore.size()).isEqualTo(1001);
+            for (int i = 0; i < 1000; i++) {
+                assertThat(fileStore.get("Id-" + i)).isEqualByComparingTo(i == 7 ? "70.25" : String.valueOf(i));
+            }
+            assertThat(fileStore.get(longAccountId.toString())).isEqualByComparingTo("3.5");
+            assertThat(fileStore.get("Id-unknown")).isNull();
+        } finally {
+            storeFile.delete();
+        }
+    }
+
+    @Test
+    public void rankingIsDisabled() throws Exception {
+        this.accountsService.createAccount(new Account("Id-1", new BigDecimal(100)));
+        assertThat(this.accountsAggregates.isRankingEnabled()).isFalse();
+        assertThat(this.accountsAggregates.getTopAccounts(10)).isEmpty();
+        assertThat(this.accountsAggregates.getTotal()).isEqualByComparingTo("100");
+    }
+}
@@ -6,6 +6,7 @@ import com.db.awmd.challenge.exception.DuplicateAccountIdException;
 import com.db.awmd.challenge.exception.InsufficientBalanceException;
 import com.db.awmd.challenge.repository.AccountsRepository;
 import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.BalanceUpdatesPublisher;
 import com.db.awmd.challenge.service.NotificationService;
 import org.junit.Before;
 import org.junit.Test;
@@ -34,6 +35,8 @@ public class AccountsServiceTest {
     private AccountsService accountsService;
     @Autowired
     private AccountsRepository accountsRepository;
+    @Autowired
+    private BalanceUpdatesPublisher balanceUpdatesPublisher;
 
     private int accountNumber = 5;
 
@@ -73,7 +76,8 @@ public class AccountsServiceTest {
     @Test
     public void createTransactionNotificationTest() throws Exception {
         NotificationService notificationService = mock(NotificationService.class);
-        AccountsService accountsService = new AccountsService(this.accountsRepository, notificationService);
+        AccountsService accountsService = new AccountsService(this.accountsRepository, notificationService,
+                this.balanceUpdatesPublisher);
         String accountFromId = "Id-100";
         Account accountFrom = new Account(accountFromId, new BigDecimal(100));
         accountsService.createAccount(accountFrom);
@@ -0,0 +1,176 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Transaction;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.BalanceUpdatesPublisher;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@WebAppConfiguration
+public class BalanceUpdatesPublisherTest {
+
+    private MockMvc mockMvc;
+
+    @Autowired
+    private AccountsService accountsService;
+    @Autowired
+    private BalanceUpdatesPublisher balanceUpdatesPublisher;
+    @Autowired
+    private WebApplicationContext webApplicationContext;
+
+    @Before
+    public void prepare() {
+        this.mockMvc = webAppContextSetup(this.webApplicationContext).build();
+        this.accountsService.getAccountsRepository().clearAccounts();
+        this.accountsService.createAccount(new Account("Id-1", new BigDecimal(1000)));
+        this.accountsService.createAccount(new Account("Id-2", new BigDecimal(0)));
+        this.accountsService.createAccount(new Account("Id-3", new BigDecimal(0)));
+    }
+
+    @Test
+    public void slowSubscriberReceivesLatestBalance() throws Exception {
+        CountDownLatch firstUpdate = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Account> updates = new CopyOnWriteArrayList<>();
+        BalanceUpdatesPublisher.Subscription subscription = this.balanceUpdatesPublisher.subscribe(
+                Arrays.asList("Id-2"), account -> {
+                    updates.add(account);
+                    firstUpdate.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+
+        this.accountsService.createTransaction(new Transaction("Id-1", "Id-2", new BigDecimal(1)));
+        assertThat(firstUpdate.await(5, TimeUnit.SECONDS)).isTrue();
+        // The subscriber is blocked, the transfers are not and their balances are coalesced.
+        for (int i = 0; i < 100; i++) {
+            this.accountsService.createTransaction(new Transaction("Id-1", "Id-2", new BigDecimal(1)));
+        }
+        release.countDown();
+
+        for (int i = 0; i < 50 && updates.size() < 2; i++) {
+            Thread.sleep(100);
+        }
+        Thread.sleep(100);
+        assertThat(updates).extracting(Account::getBalance)
+                .usingElementComparator(BigDecimal::compareTo)
+                .containsExactly(new BigDecimal(1), new BigDecimal(101));
+        subscription.cancel();
+    }
+
+    @Test
+    public void stalledSubscriberDoesNotHoldUpOthers() throws Exception {
+        BalanceUpdatesPublisher publisher = new BalanceUpdatesPublisher(1, 200, 16);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch stalled = new CountDownLatch(1);
+        CountDownLatch received = new CountDownLatch(1);
+        try {
+            BalanceUpdatesPublisher.Subscription stalledSubscription = publisher.subscribe(Arrays.asList("Id-1"),
+                    account -> {
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    });
+            stalledSubscription.onStall(stalled::countDown);
+            publisher.subscribe(Arrays.asList("Id-2"), account -> received.countDown());
+
+            // The only dispatcher thread is blocked by the first subscriber.
+            publisher.publish(new Account("Id-1", new BigDecimal(1)));
+            Thread.sleep(50);
+            publisher.publish(new Account("Id-2", new BigDecimal(2)));
+
+            assertThat(stalled.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(received.await(5, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            release.countDown();
+            publisher.stop();
+        }
+    }
+
+    @Test
+    public void blockingStallActionDoesNotHoldUpOtherStalls() throws Exception {
+        BalanceUpdatesPublisher publisher = new BalanceUpdatesPublisher(2, 200, 16);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch stalled = new CountDownLatch(2);
+        try {
+            for (String accountId : Arrays.asList("Id-1", "Id-2")) {
+                Runnable awaitRelease = () -> {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                };
+                BalanceUpdatesPublisher.Subscription subscription = publisher.subscribe(Arrays.asList(accountId),
+                        account -> awaitRelease.run());
+                // Like completing an emitter that is blocked in a write.
+                subscription.onStall(() -> {
+                    stalled.countDown();
+                    awaitRelease.run();
+                });
+            }
+
+            publisher.publish(new Account("Id-1", new BigDecimal(1)));
+            publisher.publish(new Account("Id-2", new BigDecimal(2)));
+
+            assertThat(stalled.await(5, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            release.countDown();
+            publisher.stop();
+        }
+    }
+
+    @Test
+    public void cancelledSubscriptionReceivesNothing() throws Exception {
+        List<Account> updates = new CopyOnWriteArrayList<>();
+        BalanceUpdatesPublisher.Subscription subscription = this.balanceUpdatesPublisher.subscribe(
+                Arrays.asList("Id-2", "Id-3"), updates::add);
+        subscription.cancel();
+
+        this.accountsService.createTransaction(new Transaction("Id-1", "Id-3", new BigDecimal(1)));
+        Thread.sleep(200);
+        assertThat(updates).isEmpty();
+    }
+
+    @Test
+    public void subscribeStartsEventStream() throws Exception {
+        this.mockMvc.perform(get("/v1/balance-updates").param("accountId", "Id-1", "Id-2"))
+                .andExpect(request().asyncStarted());
+    }
+
+    @Test
+    public void subscribeUnknownAccount() throws Exception {
+        this.mockMvc.perform(get("/v1/balance-updates").param("accountId", "Id-unknown"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Account is not found by id Id-unknown"));
+    }
+}
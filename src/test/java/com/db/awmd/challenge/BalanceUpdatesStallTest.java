@@ -0,0 +1,108 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Transaction;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.BalanceUpdatesPublisher;
+import com.db.awmd.challenge.service.NotificationService;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.embedded.LocalServerPort;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"balance-updates.dispatcher-threads=1", "balance-updates.send-timeout-millis=300",
+                "balance-updates.max-stalled-threads=1"})
+public class BalanceUpdatesStallTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private AccountsService accountsService;
+    @Autowired
+    private BalanceUpdatesPublisher balanceUpdatesPublisher;
+    @MockBean
+    private NotificationService notificationService;
+
+    @Test
+    public void stalledConnectionsAreClosed() throws Exception {
+        this.accountsService.getAccountsRepository().clearAccounts();
+        this.accountsService.createAccount(new Account("Id-1", new BigDecimal(1_000_000_000)));
+        this.accountsService.createAccount(new Account("Id-2", new BigDecimal(0)));
+        this.accountsService.createAccount(new Account("Id-3", new BigDecimal(0)));
+        this.accountsService.createAccount(new Account("Id-4", new BigDecimal(0)));
+
+        // Neither connection is read, the writes to them block once the socket buffers are full.
+        Socket first = subscribe("Id-2");
+        Socket second = subscribe("Id-3");
+        CountDownLatch received = new CountDownLatch(1);
+        BalanceUpdatesPublisher.Subscription subscription = this.balanceUpdatesPublisher.subscribe(
+                Arrays.asList("Id-4"), account -> received.countDown());
+        try {
+            // Fills the socket buffers until the deliveries to both connections stall.
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(8);
+            while (System.nanoTime() < deadline) {
+                this.accountsService.createTransaction(new Transaction("Id-1", "Id-2", BigDecimal.ONE));
+                this.accountsService.createTransaction(new Transaction("Id-1", "Id-3", BigDecimal.ONE));
+            }
+
+            // Only one extra dispatcher thread may be added, the other subscribers are served once both stalled
+            // deliveries have failed on their closed connections.
+            this.accountsService.createTransaction(new Transaction("Id-1", "Id-4", BigDecimal.ONE));
+            assertThat(received.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(isClosedByServer(first)).isTrue();
+            assertThat(isClosedByServer(second)).isTrue();
+        } finally {
+            subscription.cancel();
+            first.close();
+            second.close();
+        }
+    }
+
+    private Socket subscribe(String accountId) throws Exception {
+        Socket socket = new Socket();
+        socket.setReceiveBufferSize(4096);
+        socket.connect(new InetSocketAddress("localhost", this.port));
+        OutputStream outputStream = socket.getOutputStream();
+        outputStream.write(("GET /v1/balance-updates?accountId=" + accountId + " HTTP/1.1\r\n"
+                + "Host: localhost\r\nAccept: text/event-stream\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        outputStream.flush();
+        return socket;
+    }
+
+    private boolean isClosedByServer(Socket socket) throws Exception {
+        socket.setSoTimeout(5000);
+        InputStream inputStream = socket.getInputStream();
+        byte[] buffer = new byte[65536];
+        try {
+            while (inputStream.read(buffer) >= 0) {
+                // Drains what was sent before the connection was closed.
+            }
+            return true;
+        } catch (SocketTimeoutException e) {
+            return false;
+        } catch (SocketException e) {
+            // Reset.
+            return true;
+        }
+    }
+}
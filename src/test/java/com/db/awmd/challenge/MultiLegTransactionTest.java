@@ -0,0 +1,239 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.MultiLegTransaction;
+import com.db.awmd.challenge.domain.Transaction;
+import com.db.awmd.challenge.exception.IncorrectAccountIdException;
+import com.db.awmd.challenge.exception.InsufficientBalanceException;
+import com.db.awmd.challenge.repository.AccountsAggregates;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.BalanceUpdatesPublisher;
+import com.db.awmd.challenge.service.NotificationService;
+import com.db.awmd.challenge.web.AccountsJsonHttpMessageConverter;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@WebAppConfiguration
+public class MultiLegTransactionTest {
+
+    private MockMvc mockMvc;
+
+    @Autowired
+    private AccountsService accountsService;
+    @Autowired
+    private AccountsRepository accountsRepository;
+    @Autowired
+    private BalanceUpdatesPublisher balanceUpdatesPublisher;
+    @Autowired
+    private AccountsAggregates accountsAggregates;
+    @Autowired
+    private WebApplicationContext webApplicationContext;
+
+    @Before
+    public void prepare() {
+        this.mockMvc = webAppContextSetup(this.webApplicationContext).build();
+        this.accountsService.getAccountsRepository().clearAccounts();
+        this.accountsService.createAccount(new Account("Id-payer", new BigDecimal("100")));
+        this.accountsService.createAccount(new Account("Id-payee", new BigDecimal("0")));
+        this.accountsService.createAccount(new Account("Id-fee", new BigDecimal("0")));
+    }
+
+    @Test
+    public void feePayment() throws Exception {
+        this.mockMvc.perform(post("/v1/multi-leg-transactions").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"legs\":["
+                        + "{\"accountFromId\":\"Id-payer\",\"accountToId\":\"Id-payee\",\"amount\":95.5},"
+                        + "{\"accountFromId\":\"Id-payer\",\"accountToId\":\"Id-fee\",\"amount\":4.5}]}"))
+                .andExpect(status().isCreated());
+
+        assertThat(this.accountsService.getAccount("Id-payer").getBalance()).isEqualByComparingTo("0");
+        assertThat(this.accountsService.getAccount("Id-payee").getBalance()).isEqualByComparingTo("95.5");
+        assertThat(this.accountsService.getAccount("Id-fee").getBalance()).isEqualByComparingTo("4.5");
+        assertThat(this.accountsAggregates.getTotal()).isEqualByComparingTo("100");
+        assertThat(this.accountsAggregates.getTopAccounts(1).get(0).getAccountId()).isEqualTo("Id-payee");
+    }
+
+    @Test
+    public void insufficientNetBalanceAppliesNoLeg() throws Exception {
+        this.mockMvc.perform(post("/v1/multi-leg-transactions").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"legs\":["
+                        + "{\"accountFromId\":\"Id-payer\",\"accountToId\":\"Id-payee\",\"amount\":96},"
+                        + "{\"accountFromId\":\"Id-payer\",\"accountToId\":\"Id-fee\",\"amount\":5}]}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("An account with id Id-payer has an insufficient balance."));
+
+        assertThat(this.accountsService.getAccount("Id-payer").getBalance()).isEqualByComparingTo("100");
+        assertThat(this.accountsService.getAccount("Id-payee").getBalance()).isEqualByComparingTo("0");
+        assertThat(this.accountsService.getAccount("Id-fee").getBalance()).isEqualByComparingTo("0");
+    }
+
+    @Test
+    public void unknownAccountAppliesNoLeg() throws Exception {
+        try {
+            this.accountsService.createMultiLegTransaction(new MultiLegTransaction(Arrays.asList(
+                    new Transaction("Id-payer", "Id-payee", new BigDecimal(10)),
+                    new Transaction("Id-payer", "Id-unknown", new BigDecimal(1)))));
+            fail("Should have failed on an unknown account");
+        } catch (IncorrectAccountIdException e) {
+            assertThat(e.getMessage()).isEqualTo("Account is not found by id Id-unknown");
+        }
+        assertThat(this.accountsService.getAccount("Id-payer").getBalance()).isEqualByComparingTo("100");
+        assertThat(this.accountsService.getAccount("Id-payee").getBalance()).isEqualByComparingTo("0");
+    }
+
+    @Test
+    public void emptyLegs() throws Exception {
+        this.mockMvc.perform(post("/v1/multi-leg-transactions").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"legs\":[]}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void negativeLegAmount() throws Exception {
+        this.mockMvc.perform(post("/v1/multi-leg-transactions").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"legs\":[{\"accountFromId\":\"Id-payer\",\"accountToId\":\"Id-payee\",\"amount\":-1}]}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void netDebitIsCheckedOncePerAccount() throws Exception {
+        NotificationService notificationService = mock(NotificationService.class);
+        AccountsService accountsService = new AccountsService(this.accountsRepository, notificationService,
+                this.balanceUpdatesPublisher);
+
+        // The payee forwards money it only receives in the same transfer.
+        accountsService.createMultiLegTransaction(new MultiLegTransaction(Arrays.asList(
+                new Transaction("Id-payee", "Id-fee", new BigDecimal(10)),
+                new Transaction("Id-payer", "Id-payee", new BigDecimal(30)))));
+
+        Account payer = accountsService.getAccount("Id-payer");
+        Account payee = accountsService.getAccount("Id-payee");
+        Account fee = accountsService.getAccount("Id-fee");
+        assertThat(payer.getBalance()).isEqualByComparingTo("70");
+        assertThat(payee.getBalance()).isEqualByComparingTo("20");
+        assertThat(fee.getBalance()).isEqualByComparingTo("10");
+        verify(notificationService).notifyAboutTransfer(payer, "You transferred $30 to accounts Id-payee");
+        verify(notificationService).notifyAboutTransfer(payee, "You received $20 from accounts Id-fee, Id-payer");
+        verify(notificationService).notifyAboutTransfer(fee, "You received $10 from accounts Id-payee");
+        verifyNoMoreInteractions(notificationService);
+    }
+
+    @Test
+    public void zeroNetAccountIsNeitherWrittenNorNotified() throws Exception {
+        NotificationService notificationService = mock(NotificationService.class);
+        AccountsService accountsService = new AccountsService(this.accountsRepository, notificationService,
+                this.balanceUpdatesPublisher);
+
+        // The payee passes on everything it receives.
+        accountsService.createMultiLegTransaction(new MultiLegTransaction(Arrays.asList(
+                new Transaction("Id-payer", "Id-payee", new BigDecimal(10)),
+                new Transaction("Id-payee", "Id-fee", new BigDecimal(10)))));
+
+        Account payer = accountsService.getAccount("Id-payer");
+        Account fee = accountsService.getAccount("Id-fee");
+        assertThat(payer.getBalance()).isEqualByComparingTo("90");
+        assertThat(accountsService.getAccount("Id-payee").getBalance()).isEqualByComparingTo("0");
+        assertThat(fee.getBalance()).isEqualByComparingTo("10");
+        verify(notificationService).notifyAboutTransfer(payer, "You transferred $10 to accounts Id-payee");
+        verify(notificationService).notifyAboutTransfer(fee, "You received $10 from accounts Id-payee");
+        verifyNoMoreInteractions(notificationService);
+    }
+
+    @Test
+    public void unknownZeroNetAccountAppliesNoLeg() throws Exception {
+        try {
+            this.accountsService.createMultiLegTransaction(new MultiLegTransaction(Arrays.asList(
+                    new Transaction("Id-payer", "Id-unknown", new BigDecimal(10)),
+                    new Transaction("Id-unknown", "Id-payee", new BigDecimal(10)))));
+            fail("Should have failed on an unknown account");
+        } catch (IncorrectAccountIdException e) {
+            assertThat(e.getMessage()).isEqualTo("Account is not found by id Id-unknown");
+        }
+        assertThat(this.accountsService.getAccount("Id-payer").getBalance()).isEqualByComparingTo("100");
+        assertThat(this.accountsService.getAccount("Id-payee").getBalance()).isEqualByComparingTo("0");
+    }
+
+    @Test
+    public void tooManyLegs() throws Exception {
+        StringBuilder content = new StringBuilder("{\"legs\":[");
+        for (int i = 0; i <= AccountsJsonHttpMessageConverter.MAX_LEGS; i++) {
+            content.append(i == 0 ? "" : ",")
+                    .append("{\"accountFromId\":\"Id-payer\",\"accountToId\":\"Id-payee\",\"amount\":0.01}");
+        }
+        content.append("]}");
+
+        this.mockMvc.perform(post("/v1/multi-leg-transactions").contentType(MediaType.APPLICATION_JSON)
+                .content(content.toString()))
+                .andExpect(status().isBadRequest());
+        assertThat(this.accountsService.getAccount("Id-payer").getBalance()).isEqualByComparingTo("100");
+    }
+
+    @Test
+    public void concurrentMultiLegTransfersConserveMoney() throws Exception {
+        int accountNumber = 6;
+        for (int i = 0; i < accountNumber; i++) {
+            this.accountsService.createAccount(new Account("Id-" + i, new BigDecimal(1000)));
+        }
+
+        List<Callable<Void>> callables = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            callables.add(() -> {
+                Random ran = new Random();
+                for (int i = 0; i < 1000; i++) {
+                    List<Transaction> legs = new ArrayList<>();
+                    for (int leg = 0; leg < 1 + ran.nextInt(4); leg++) {
+                        int fromId = ran.nextInt(accountNumber);
+                        int toId = (fromId + 1 + ran.nextInt(accountNumber - 1)) % accountNumber;
+                        legs.add(new Transaction("Id-" + fromId, "Id-" + toId, new BigDecimal(ran.nextInt(300))));
+                    }
+                    try {
+                        this.accountsService.createMultiLegTransaction(new MultiLegTransaction(legs));
+                    } catch (InsufficientBalanceException e) {
+                        // Expected from time to time, none of the legs is applied.
+                    }
+                }
+                return null;
+            });
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        executor.invokeAll(callables);
+        executor.shutdown();
+
+        BigDecimal sum = BigDecimal.ZERO;
+        for (int i = 0; i < accountNumber; i++) {
+            BigDecimal balance = this.accountsService.getAccount("Id-" + i).getBalance();
+            assertThat(balance.signum()).isGreaterThanOrEqualTo(0);
+            sum = sum.add(balance);
+        }
+        assertThat(sum).isEqualByComparingTo(new BigDecimal(1000 * accountNumber));
+        assertThat(this.accountsAggregates.getTotal()).isEqualByComparingTo(new BigDecimal(1000 * accountNumber + 100));
+    }
+}
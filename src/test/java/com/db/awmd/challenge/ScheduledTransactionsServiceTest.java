@@ -0,0 +1,233 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.ScheduledTransaction;
+import com.db.awmd.challenge.domain.Transaction;
+import com.db.awmd.challenge.exception.IncorrectAccountIdException;
+import com.db.awmd.challenge.exception.IncorrectScheduleException;
+import com.db.awmd.challenge.repository.ScheduledTransactionsJournal;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.HierarchicalTimingWheel;
+import com.db.awmd.challenge.service.ScheduledTransactionsService;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class ScheduledTransactionsServiceTest {
+
+    @Autowired
+    private AccountsService accountsService;
+    @Autowired
+    private ScheduledTransactionsService scheduledTransactionsService;
+
+    @Before
+    public void prepare() {
+        this.accountsService.getAccountsRepository().clearAccounts();
+    }
+
+    @Test
+    public void timingWheelExpiresEntriesInOrderAcrossLevels() throws Exception {
+        HierarchicalTimingWheel<Long> timingWheel = new HierarchicalTimingWheel<>(10, 8, 0);
+        assertThat(timingWheel.add(0, 0L)).isFalse();
+        long[] deadlines = {5, 25, 79, 80, 640, 5000, 123456};
+        for (long deadline : deadlines) {
+            assertThat(timingWheel.add(deadline, deadline)).isTrue();
+        }
+        assertThat(timingWheel.size()).isEqualTo(7);
+
+        List<Long> expired = new ArrayList<>();
+        for (long now = 0; now <= 130000; now += 10) {
+            int before = expired.size();
+            timingWheel.advanceClock(now, expired);
+            for (int i = before; i < expired.size(); i++) {
+                assertThat(expired.get(i)).isLessThanOrEqualTo(now).isGreaterThan(now - 10);
+            }
+        }
+        assertThat(expired).containsExactly(5L, 25L, 79L, 80L, 640L, 5000L, 123456L);
+        assertThat(timingWheel.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void timingWheelHoldsFarDeadlinesWithoutOverflow() throws Exception {
+        HierarchicalTimingWheel<Long> timingWheel = new HierarchicalTimingWheel<>(100, 512, 1_000_000);
+        assertThat(timingWheel.add(Long.MAX_VALUE, Long.MAX_VALUE)).isTrue();
+        assertThat(timingWheel.add(5_000_000_000_000_000_000L, 5_000_000_000_000_000_000L)).isTrue();
+        assertThat(timingWheel.add(1_000_500, 1_000_500L)).isTrue();
+
+        List<Long> expired = new ArrayList<>();
+        timingWheel.advanceClock(1_001_000, expired);
+        assertThat(expired).containsExactly(1_000_500L);
+        assertThat(timingWheel.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void timingWheelRemovesEntries() throws Exception {
+        HierarchicalTimingWheel<Long> timingWheel = new HierarchicalTimingWheel<>(10, 8, 0);
+        for (long deadline = 10; deadline <= 100000; deadline += 10) {
+            assertThat(timingWheel.add(deadline, deadline)).isTrue();
+        }
+        assertThat(timingWheel.removeIf(deadline -> deadline % 20 == 0)).isEqualTo(5000);
+        assertThat(timingWheel.size()).isEqualTo(5000);
+
+        List<Long> expired = new ArrayList<>();
+        timingWheel.advanceClock(100000, expired);
+        assertThat(expired).hasSize(5000);
+        for (long deadline : expired) {
+            assertThat(deadline % 20).isEqualTo(10);
+        }
+        assertThat(timingWheel.size()).isEqualTo(0);
+    }
+
+    @Test(expected = IncorrectScheduleException.class)
+    public void repeatIntervalBelowTickFails() throws Exception {
+        this.scheduledTransactionsService.schedule(new ScheduledTransaction(
+                new Transaction("Id-1", "Id-2", new BigDecimal(10)), System.currentTimeMillis(), 1L));
+    }
+
+    @Test
+    public void missedPeriodsAreSkipped() throws Exception {
+        this.accountsService.createAccount(new Account("Id-5", new BigDecimal(1000)));
+        this.accountsService.createAccount(new Account("Id-6", new BigDecimal(0)));
+
+        // A thousand periods were missed, e.g. while the service was down.
+        ScheduledTransaction scheduledTransaction = this.scheduledTransactionsService.schedule(new ScheduledTransaction(
+                new Transaction("Id-5", "Id-6", new BigDecimal(1)), System.currentTimeMillis() - 100_000, 100L));
+
+        waitForBalance("Id-6", new BigDecimal(3));
+        this.scheduledTransactionsService.cancel(scheduledTransaction.getScheduledTransactionId());
+        assertThat(this.scheduledTransactionsService.getMetrics().getLastLagMillis()).isLessThan(1000);
+    }
+
+    @Test(expected = IncorrectScheduleException.class)
+    public void scheduleBeyondHorizonFails() throws Exception {
+        this.scheduledTransactionsService.schedule(new ScheduledTransaction(
+                new Transaction("Id-1", "Id-2", new BigDecimal(10)), Long.MAX_VALUE, 0L));
+    }
+
+    @Test
+    public void scheduledTransactionIsExecuted() throws Exception {
+        this.accountsService.createAccount(new Account("Id-1", new BigDecimal(100)));
+        this.accountsService.createAccount(new Account("Id-2", new BigDecimal(0)));
+
+        ScheduledTransaction scheduledTransaction = new ScheduledTransaction(
+                new Transaction("Id-1", "Id-2", new BigDecimal(30)), System.currentTimeMillis() + 200, 0L);
+        this.scheduledTransactionsService.schedule(scheduledTransaction);
+        assertThat(scheduledTransaction.getScheduledTransactionId()).isNotNull();
+        assertThat(this.accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("0");
+
+        waitForBalance("Id-2", new BigDecimal(30));
+        assertThat(this.accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("70");
+    }
+
+    @Test
+    public void recurringTransactionIsExecutedRepeatedly() throws Exception {
+        this.accountsService.createAccount(new Account("Id-3", new BigDecimal(100)));
+        this.accountsService.createAccount(new Account("Id-4", new BigDecimal(0)));
+
+        ScheduledTransaction scheduledTransaction = this.scheduledTransactionsService.schedule(new ScheduledTransaction(
+                new Transaction("Id-3", "Id-4", new BigDecimal(10)), System.currentTimeMillis(), 100L));
+
+        waitForBalance("Id-4", new BigDecimal(30));
+        assertThat(this.scheduledTransactionsService.cancel(scheduledTransaction.getScheduledTransactionId())).isTrue();
+        assertThat(this.scheduledTransactionsService.cancel(scheduledTransaction.getScheduledTransactionId())).isFalse();
+    }
+
+    @Test
+    public void cancelUnknownTransaction() throws Exception {
+        assertThat(this.scheduledTransactionsService.cancel("unknown")).isFalse();
+    }
+
+    @Test(expected = IncorrectAccountIdException.class)
+    public void scheduleToItselfFails() throws Exception {
+        this.scheduledTransactionsService.schedule(new ScheduledTransaction(
+                new Transaction("Id-1", "Id-1", new BigDecimal(10)), System.currentTimeMillis(), 0L));
+    }
+
+    @Test
+    public void journalKeepsOnlyPendingTransactions() throws Exception {
+        File file = File.createTempFile("scheduled-transactions", ".journal");
+        file.deleteOnExit();
+        ScheduledTransactionsJournal journal = new ScheduledTransactionsJournal(file.getPath());
+        ScheduledTransaction first = new ScheduledTransaction(
+                new Transaction("Id-1", "Id-2", new BigDecimal("10.5")), 1000L, 0L);
+        first.setScheduledTransactionId("first");
+        ScheduledTransaction second = new ScheduledTransaction(
+                new Transaction("Id-2", "Id-1", new BigDecimal("20.25")), 2000L, 500L);
+        second.setScheduledTransactionId("second");
+        journal.append(first);
+        journal.append(second);
+        journal.remove("first");
+        journal.close();
+
+        Collection<ScheduledTransaction> pending = new ScheduledTransactionsJournal(file.getPath()).load();
+        assertThat(pending).containsExactly(second);
+    }
+
+    @Test
+    public void journalKeepsAccountIdsWithSeparators() throws Exception {
+        File file = File.createTempFile("scheduled-transactions", ".journal");
+        file.deleteOnExit();
+        ScheduledTransactionsJournal journal = new ScheduledTransactionsJournal(file.getPath());
+        ScheduledTransaction tabs = new ScheduledTransaction(
+                new Transaction("Id\t1\\t", "Id-2\\", new BigDecimal(10)), 1000L, 0L);
+        tabs.setScheduledTransactionId("tabs");
+        // The id would forge a second record if line breaks were written as they are.
+        ScheduledTransaction forging = new ScheduledTransaction(
+                new Transaction("Id-1\nA\tforged\tId-1\tId-2\t1000\t0\t0", "Id-2\r", new BigDecimal(20)), 2000L, 0L);
+        forging.setScheduledTransactionId("forging");
+        journal.append(tabs);
+        journal.append(forging);
+        journal.close();
+
+        Collection<ScheduledTransaction> pending = new ScheduledTransactionsJournal(file.getPath()).load();
+        assertThat(pending).containsExactly(tabs, forging);
+    }
+
+    @Test
+    public void journalIsCompactedWhileRunning() throws Exception {
+        File file = File.createTempFile("scheduled-transactions", ".journal");
+        file.deleteOnExit();
+        ScheduledTransactionsJournal journal = new ScheduledTransactionsJournal(file.getPath(), 10);
+        journal.load();
+        ScheduledTransaction standingOrder = null;
+        for (int i = 0; i < 1000; i++) {
+            standingOrder = new ScheduledTransaction(
+                    new Transaction("Id-1", "Id-2", new BigDecimal(1)), 1000L + i, 1L);
+            standingOrder.setScheduledTransactionId("standing");
+            journal.append(standingOrder);
+            ScheduledTransaction oneOff = new ScheduledTransaction(
+                    new Transaction("Id-2", "Id-1", new BigDecimal(2)), 1000L + i, 0L);
+            oneOff.setScheduledTransactionId("one-off-" + i);
+            journal.sync(journal.append(oneOff));
+            journal.sync(journal.remove(oneOff.getScheduledTransactionId()));
+        }
+        assertThat(Files.readAllLines(file.toPath()).size()).isLessThanOrEqualTo(11);
+        journal.close();
+
+        assertThat(new ScheduledTransactionsJournal(file.getPath()).load()).containsExactly(standingOrder);
+    }
+
+    private void waitForBalance(String accountId, BigDecimal balance) throws InterruptedException {
+        for (int i = 0; i < 50; i++) {
+            if (this.accountsService.getAccount(accountId).getBalance().compareTo(balance) >= 0) {
+                return;
+            }
+            Thread.sleep(100);
+        }
+        assertThat(this.accountsService.getAccount(accountId).getBalance()).isGreaterThanOrEqualTo(balance);
+    }
+}
@@ -0,0 +1,190 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.traffic.InProcessReplayTarget;
+import com.db.awmd.challenge.traffic.LatencyHistogram;
+import com.db.awmd.challenge.traffic.TrafficCapture;
+import com.db.awmd.challenge.traffic.TrafficLogReader;
+import com.db.awmd.challenge.traffic.TrafficLogWriter;
+import com.db.awmd.challenge.traffic.TrafficRecord;
+import com.db.awmd.challenge.traffic.TrafficReplay;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class TrafficReplayTest {
+
+    @Autowired
+    private AccountsService accountsService;
+
+    @Before
+    public void prepare() {
+        this.accountsService.getAccountsRepository().clearAccounts();
+    }
+
+    @Test
+    public void logRoundTrip() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        TrafficRecord[] records = {
+                new TrafficRecord(TrafficRecord.Type.CREATE_ACCOUNT, 10, "Id-1", null, new BigDecimal("1000.25")),
+                new TrafficRecord(TrafficRecord.Type.GET_ACCOUNT, 5, "Id-1", null, null),
+                new TrafficRecord(TrafficRecord.Type.CREATE_TRANSACTION, 3_000_000_000L, "Id-1", "Id-2",
+                        new BigDecimal("-12345678901234567890.123"))
+        };
+        try (TrafficLogWriter writer = new TrafficLogWriter(outputStream)) {
+            for (TrafficRecord record : records) {
+                writer.write(record);
+            }
+        }
+
+        TrafficLogReader reader = new TrafficLogReader(new ByteArrayInputStream(outputStream.toByteArray()));
+        for (TrafficRecord record : records) {
+            assertThat(reader.read()).isEqualTo(record);
+        }
+        assertThat(reader.read()).isNull();
+    }
+
+    @Test
+    public void logKeepsLongAccountIds() throws Exception {
+        StringBuilder longId = new StringBuilder();
+        for (int i = 0; i < 30_000; i++) {
+            longId.append("\u00e9");
+        }
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        TrafficRecord record = new TrafficRecord(TrafficRecord.Type.CREATE_TRANSACTION, 10, longId.toString(),
+                "Id-2", new BigDecimal(5));
+        try (TrafficLogWriter writer = new TrafficLogWriter(outputStream)) {
+            writer.write(record);
+        }
+
+        TrafficLogReader reader = new TrafficLogReader(new ByteArrayInputStream(outputStream.toByteArray()));
+        assertThat(reader.read()).isEqualTo(record);
+        assertThat(reader.read()).isNull();
+    }
+
+    @Test
+    public void captureDropsBadRecordAndGoesOn() throws Exception {
+        File file = File.createTempFile("traffic", ".log");
+        file.deleteOnExit();
+        TrafficCapture capture = new TrafficCapture(file.getPath(), 1024);
+        capture.start();
+        capture.record(TrafficRecord.Type.GET_ACCOUNT, "Id-1", null, null);
+        capture.record(TrafficRecord.Type.CREATE_TRANSACTION, "Id-1", null, new BigDecimal(1));
+        capture.record(TrafficRecord.Type.GET_ACCOUNT, "Id-2", null, null);
+        Thread.sleep(300);
+        assertThat(capture.isEnabled()).isTrue();
+        capture.stop();
+        assertThat(capture.getDropped()).isEqualTo(1);
+
+        try (FileInputStream inputStream = new FileInputStream(file)) {
+            TrafficLogReader reader = new TrafficLogReader(inputStream);
+            assertThat(reader.read().getAccountId()).isEqualTo("Id-1");
+            assertThat(reader.read().getAccountId()).isEqualTo("Id-2");
+            assertThat(reader.read()).isNull();
+        }
+    }
+
+    @Test
+    public void captureAndReplayInProcess() throws Exception {
+        File file = File.createTempFile("traffic", ".log");
+        file.deleteOnExit();
+        TrafficCapture capture = new TrafficCapture(file.getPath(), 1024);
+        capture.start();
+        for (int i = 0; i < 10; i++) {
+            capture.record(TrafficRecord.Type.CREATE_TRANSACTION, "Id-1", "Id-2", new BigDecimal(20));
+            capture.record(TrafficRecord.Type.GET_ACCOUNT, "Id-2", null, null);
+        }
+        capture.stop();
+        assertThat(capture.getDropped()).isEqualTo(0);
+
+        this.accountsService.createAccount(new Account("Id-1", new BigDecimal(100)));
+        this.accountsService.createAccount(new Account("Id-2", new BigDecimal(0)));
+        TrafficReplay replay = new TrafficReplay(new InProcessReplayTarget(this.accountsService), 1, 4);
+        try (FileInputStream inputStream = new FileInputStream(file)) {
+            replay.replay(new TrafficLogReader(inputStream));
+        }
+
+        assertThat(replay.getLatencies().getCount()).isEqualTo(20);
+        assertThat(replay.getFailed()).isEqualTo(0);
+        // Transfers of one account keep their order: five succeed, the other five find an empty account.
+        assertThat(this.accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("0");
+        assertThat(this.accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("100");
+        assertThat(replay.getRejected()).isEqualTo(5);
+    }
+
+    @Test
+    public void replayOutcomeDoesNotDependOnThreads() throws Exception {
+        // Money is passed on from account to account, every transfer depends on the one before on another account.
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (TrafficLogWriter writer = new TrafficLogWriter(outputStream)) {
+            writer.write(new TrafficRecord(TrafficRecord.Type.CREATE_ACCOUNT, 0, "Id-0", null, new BigDecimal(10)));
+            for (int i = 1; i < 50; i++) {
+                writer.write(new TrafficRecord(TrafficRecord.Type.CREATE_ACCOUNT, 0, "Id-" + i, null, BigDecimal.ZERO));
+                writer.write(new TrafficRecord(TrafficRecord.Type.CREATE_TRANSACTION, 0, "Id-" + (i - 1), "Id-" + i,
+                        new BigDecimal(10)));
+            }
+        }
+
+        for (int run = 0; run < 20; run++) {
+            this.accountsService.getAccountsRepository().clearAccounts();
+            TrafficReplay replay = new TrafficReplay(new InProcessReplayTarget(this.accountsService),
+                    Double.POSITIVE_INFINITY, 16, 64);
+            replay.replay(new TrafficLogReader(new ByteArrayInputStream(outputStream.toByteArray())));
+
+            assertThat(replay.getRejected()).isEqualTo(0);
+            assertThat(replay.getFailed()).isEqualTo(0);
+            assertThat(this.accountsService.getAccount("Id-49").getBalance()).isEqualByComparingTo("10");
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroRateFails() throws Exception {
+        new TrafficReplay(record -> true, 0, 1);
+    }
+
+    @Test
+    public void maxRateReplayReportsServiceTime() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (TrafficLogWriter writer = new TrafficLogWriter(outputStream)) {
+            for (int i = 0; i < 200; i++) {
+                writer.write(new TrafficRecord(TrafficRecord.Type.GET_ACCOUNT, 0, "Id-1", null, null));
+            }
+        }
+
+        TrafficReplay replay = new TrafficReplay(record -> {
+            Thread.sleep(1);
+            return true;
+        }, Double.POSITIVE_INFINITY, 1, 4);
+        replay.replay(new TrafficLogReader(new ByteArrayInputStream(outputStream.toByteArray())));
+
+        assertThat(replay.getLatencies().getCount()).isEqualTo(200);
+        // Queued behind 199 requests of at least 1 ms each, a latency from the enqueue time would be far higher.
+        assertThat(replay.getLatencies().getPercentileMicros(50)).isLessThan(50_000L);
+    }
+
+    @Test
+    public void histogramPercentiles() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.recordNanos(i * 1000L);
+        }
+        assertThat(histogram.getCount()).isEqualTo(1000);
+        assertThat(histogram.getPercentileMicros(50)).isBetween(500L, 516L);
+        assertThat(histogram.getPercentileMicros(99)).isBetween(990L, 1021L);
+        assertThat(histogram.getPercentileMicros(100)).isBetween(1000L, 1031L);
+    }
+}